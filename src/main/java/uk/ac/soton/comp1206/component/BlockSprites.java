@@ -0,0 +1,321 @@
+package uk.ac.soton.comp1206.component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.stage.Screen;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.utils.Multimedia;
+
+/**
+ * An atlas of every recoloured block image at one size.
+ * <p>
+ * The block image is recoloured for every colour in {@link GameBlock#COLOURS}, as a normal block, a
+ * preview and an invalid placement, each with and without the hover highlight. The images are
+ * worked out on {@code int} pixel buffers, one per sprite in parallel, then scaled down to the
+ * size they are drawn at and packed into a single image.
+ * <p>
+ * Atlases are cached by size. {@link #preload} builds one in the background, so that it can be
+ * ready before anything is drawn at that size. Nothing ever waits for an atlas on the FX thread:
+ * {@link #getIfReady} returns {@code null} until it is built, and blocks are drawn once it is.
+ */
+public final class BlockSprites {
+
+    private static final Logger logger = LogManager.getLogger(BlockSprites.class);
+
+    /**
+     * The size the block image is recoloured at. Sprites are never bigger than this.
+     */
+    private static final int BASE_SIZE = 160;
+
+    /**
+     * The kinds of block, each with its own row of sprites (times two, for hovered)
+     */
+    private static final int NORMAL = 0;
+    private static final int PREVIEW = 1;
+    private static final int INVALID = 2;
+    private static final int KINDS = 3;
+
+    /**
+     * The atlases built or being built, by size in pixels
+     */
+    private static final Map<Integer, CompletableFuture<BlockSprites>> atlases =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The pixels of the block image at {@link #BASE_SIZE}, loaded when the first atlas is built
+     */
+    private static int[] basePixels;
+
+    /**
+     * The packed sprites
+     */
+    private final WritableImage image;
+
+    /**
+     * The width and height of each sprite, in pixels
+     */
+    private final int size;
+
+    private BlockSprites(WritableImage image, int size) {
+        this.image = image;
+        this.size = size;
+    }
+
+    /**
+     * Get the size in pixels to build the sprites for blocks drawn at the given size, taking the
+     * screen's scaling into account
+     *
+     * @param blockSize the size the blocks are drawn at
+     * @return the size of the sprites, in pixels
+     */
+    public static int pixelSize(double blockSize) {
+        var scale = Screen.getPrimary().getOutputScaleX();
+        return Math.max(1, Math.min(BASE_SIZE, (int) Math.ceil(blockSize * scale)));
+    }
+
+    /**
+     * Start building the atlas for the given size in the background, if it isn't already built
+     *
+     * @param size the size of the sprites, in pixels
+     * @return the atlas, once it is built
+     */
+    public static CompletableFuture<BlockSprites> preload(int size) {
+        return atlases.computeIfAbsent(size,
+                key -> CompletableFuture.supplyAsync(() -> build(key)).whenComplete((atlas, e) -> {
+                    if (e != null) {
+                        logger.error("Could not build {}px block sprites: {}", key, e.getMessage());
+                    }
+                }));
+    }
+
+    /**
+     * Get the atlas for the given size if it has been built, starting to build it if it hasn't
+     *
+     * @param size the size of the sprites, in pixels
+     * @return the atlas, or {@code null} if it isn't ready yet
+     */
+    public static BlockSprites getIfReady(int size) {
+        return ready(preload(size));
+    }
+
+    /**
+     * Get an atlas without waiting for it
+     *
+     * @param atlas the atlas, which may still be being built
+     * @return the atlas, or {@code null} if it isn't built yet or couldn't be built
+     */
+    static BlockSprites ready(CompletableFuture<BlockSprites> atlas) {
+        if (!atlas.isDone() || atlas.isCompletedExceptionally()) {
+            return null;
+        }
+        return atlas.join();
+    }
+
+    /**
+     * Draw the sprite for a block
+     *
+     * @param gc      the graphics context to draw on
+     * @param value   the value of the block; must not be 0
+     * @param hovered whether the block is hovered over
+     * @param left    the x position to draw at
+     * @param top     the y position to draw at
+     * @param width   the width to draw at
+     * @param height  the height to draw at
+     */
+    void draw(GraphicsContext gc, int value, boolean hovered, double left, double top,
+            double width, double height) {
+        int kind;
+        int colour;
+        if (value < 0) {
+            kind = INVALID;
+            colour = -value - 1; // 0 for an empty block
+        } else if (value >= 100) {
+            kind = PREVIEW;
+            colour = value - 100;
+        } else {
+            kind = NORMAL;
+            colour = value;
+        }
+
+        var row = kind * 2 + (hovered ? 1 : 0);
+        gc.drawImage(image, colour * size, row * size, size, size, left, top, width, height);
+    }
+
+    /**
+     * Build the atlas for the given size
+     *
+     * @param size the size of the sprites, in pixels
+     * @return the atlas
+     */
+    private static BlockSprites build(int size) {
+        var start = System.nanoTime();
+        var base = getBasePixels();
+        var colours = GameBlock.COLOURS.length;
+        var count = colours * KINDS * 2;
+
+        // Work out each sprite on its own buffer in parallel
+        var sprites = new int[count][];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            var colour = i % colours;
+            var row = i / colours;
+            var tinted = tint(base, tintColour(row / 2, colour), row % 2 == 1);
+            sprites[i] = scale(tinted, BASE_SIZE, size);
+        });
+
+        // Then pack them into the atlas
+        var image = new WritableImage(colours * size, KINDS * 2 * size);
+        var writer = image.getPixelWriter();
+        for (int i = 0; i < count; i++) {
+            writer.setPixels((i % colours) * size, (i / colours) * size, size, size,
+                    PixelFormat.getIntArgbInstance(), sprites[i], 0, size);
+        }
+
+        logger.info("Built {}px block sprites in {}ms", size, (System.nanoTime() - start) / 1000000);
+        return new BlockSprites(image, size);
+    }
+
+    /**
+     * Load the pixels of the block image, if they haven't been already
+     *
+     * @return the pixels, as non-premultiplied ARGB
+     */
+    private static synchronized int[] getBasePixels() {
+        if (basePixels == null) {
+            Image base = Multimedia.loadImage("block.png", BASE_SIZE, BASE_SIZE).join();
+            var pixels = new int[BASE_SIZE * BASE_SIZE];
+            base.getPixelReader().getPixels(0, 0, BASE_SIZE, BASE_SIZE,
+                    PixelFormat.getIntArgbInstance(), pixels, 0, BASE_SIZE);
+            basePixels = pixels;
+        }
+        return basePixels;
+    }
+
+    /**
+     * Get the colour to recolour a sprite with
+     *
+     * @param kind   the kind of block
+     * @param colour the index of the colour in {@link GameBlock#COLOURS}
+     * @return the colour
+     */
+    private static Color tintColour(int kind, int colour) {
+        var col = GameBlock.COLOURS[colour];
+        return switch (kind) {
+            // Add red over existing color to show invalid placement
+            case INVALID -> colour == 0 ? Color.rgb(255, 0, 0, 0.7) : Color.RED.interpolate(col, 0.3);
+            // preview -> paint semi-transparent
+            case PREVIEW -> Color.TRANSPARENT.interpolate(col, 0.7);
+            default -> col;
+        };
+    }
+
+    /**
+     * Recolour the block image with the given {@linkplain Color}.
+     *
+     * <ul>
+     *     <li>White pixels are replaced with the given {@linkplain Color}</li>
+     *     <li>Black pixels are replaced with a darkened version of the given {@linkplain Color}</li>
+     *     <li>All other pixels are slightly tinted with the given {@linkplain Color}.<br>
+     *     If the block is hovered, opaque pixels are replaced with white instead</li>
+     * </ul>
+     *
+     * @param base    the pixels of the block image
+     * @param color   the color to recolor the image with
+     * @param hovered whether the block is hovered over
+     * @return the recoloured pixels
+     */
+    private static int[] tint(int[] base, Color color, boolean hovered) {
+        var r = color.getRed();
+        var g = color.getGreen();
+        var b = color.getBlue();
+        var a = color.getOpacity();
+
+        var inside = argb(a, r, g, b);
+        var shadow = argb(a + (1 - a) * 0.2, r * 0.8, g * 0.8, b * 0.8);
+
+        var result = new int[base.length];
+        for (int i = 0; i < base.length; i++) {
+            var pixel = base[i];
+            if (pixel == 0xFFFFFFFF) { // The inside of the block
+                result[i] = inside;
+            } else if (pixel == 0xFF000000) { // The shadow at the bottom
+                result[i] = shadow;
+            } else if (hovered && pixel >>> 24 == 0xFF) { // the border of a hovered block
+                result[i] = 0xFFFFFFFF;
+            } else { // the border of the block
+                var pa = (pixel >>> 24) / 255.0;
+                var pr = (pixel >> 16 & 0xFF) / 255.0;
+                var pg = (pixel >> 8 & 0xFF) / 255.0;
+                var pb = (pixel & 0xFF) / 255.0;
+                result[i] = argb(pa + (a - pa) * 0.2, pr + (r - pr) * 0.2, pg + (g - pg) * 0.2,
+                        pb + (b - pb) * 0.2);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pack colour components into a non-premultiplied ARGB pixel
+     *
+     * @return the pixel
+     */
+    private static int argb(double a, double r, double g, double b) {
+        return (int) Math.round(a * 255) << 24 | (int) Math.round(r * 255) << 16
+                | (int) Math.round(g * 255) << 8 | (int) Math.round(b * 255);
+    }
+
+    /**
+     * Scale a square image down by averaging the pixels each output pixel covers
+     *
+     * @param pixels the pixels, as non-premultiplied ARGB
+     * @param from   the width and height of the image
+     * @param to     the width and height to scale to, no bigger than {@code from}
+     * @return the scaled pixels
+     */
+    private static int[] scale(int[] pixels, int from, int to) {
+        if (from == to) {
+            return pixels;
+        }
+
+        var result = new int[to * to];
+        for (int y = 0; y < to; y++) {
+            var y0 = y * from / to;
+            var y1 = Math.max((y + 1) * from / to, y0 + 1);
+            for (int x = 0; x < to; x++) {
+                var x0 = x * from / to;
+                var x1 = Math.max((x + 1) * from / to, x0 + 1);
+
+                // Average in premultiplied form, so transparent pixels don't darken the edges
+                long sa = 0;
+                long sr = 0;
+                long sg = 0;
+                long sb = 0;
+                for (int sy = y0; sy < y1; sy++) {
+                    for (int sx = x0; sx < x1; sx++) {
+                        var pixel = pixels[sy * from + sx];
+                        var pa = pixel >>> 24;
+                        sa += pa;
+                        sr += (pixel >> 16 & 0xFF) * pa;
+                        sg += (pixel >> 8 & 0xFF) * pa;
+                        sb += (pixel & 0xFF) * pa;
+                    }
+                }
+
+                var n = (x1 - x0) * (y1 - y0);
+                if (sa == 0) {
+                    continue;
+                }
+                result[y * to + x] = (int) (sa / n) << 24 | (int) (sr / sa) << 16
+                        | (int) (sg / sa) << 8 | (int) (sb / sa);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,203 @@
+package uk.ac.soton.comp1206.component;
+
+import java.util.Arrays;
+import javafx.animation.AnimationTimer;
+import javafx.animation.Interpolator;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.paint.Color;
+import uk.ac.soton.comp1206.utils.Multimedia;
+
+/**
+ * A canvas laid over a {@link GameBoard} that draws the animation of blocks being cleared.
+ * <p>
+ * Each cleared block is a particle in a pool of plain arrays, which only grows if more blocks are
+ * animating at once than it has room for. Every particle is drawn by a single
+ * {@link AnimationTimer}, which only runs while something is animating, so clearing a line does
+ * not add any nodes or transitions to the scene. Each clear plays its sound once, however many
+ * blocks it removes.
+ */
+class ClearEffects extends Canvas {
+
+    /**
+     * How long a block takes to shrink away, in nanoseconds
+     */
+    private static final long DURATION = 300_000_000L;
+
+    /**
+     * The colour each block flashes as it is cleared, indexed by value
+     */
+    private static final Color[] FLASH_COLOURS = new Color[GameBlock.COLOURS.length];
+
+    static {
+        for (int i = 0; i < FLASH_COLOURS.length; i++) {
+            FLASH_COLOURS[i] = GameBlock.COLOURS[i].interpolate(Color.WHITE, 0.4);
+        }
+    }
+
+    /**
+     * The size of each block
+     */
+    private final double blockWidth;
+    private final double blockHeight;
+
+    /**
+     * The block images to draw the shrinking blocks with, or {@code null} until they are ready
+     */
+    private BlockSprites sprites;
+
+    // The particles in the pool; only the first {@link #count} are in use
+    private int[] cellX = new int[64];
+    private int[] cellY = new int[64];
+    private int[] value = new int[64];
+    private long[] startTime = new long[64];
+    private int count = 0;
+
+    /**
+     * When to play the sound for the clears waiting to start, or {@link Long#MAX_VALUE} if there
+     * isn't one
+     */
+    private long soundTime = Long.MAX_VALUE;
+
+    /**
+     * Whether the timer is running
+     */
+    private boolean running = false;
+
+    /**
+     * Draws every particle each frame
+     */
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            render(now);
+        }
+    };
+
+    /**
+     * Create the effects for a board
+     *
+     * @param width       the width of the board
+     * @param height      the height of the board
+     * @param blockWidth  the width of each block
+     * @param blockHeight the height of each block
+     */
+    ClearEffects(double width, double height, double blockWidth, double blockHeight) {
+        super(width, height);
+        this.blockWidth = blockWidth;
+        this.blockHeight = blockHeight;
+
+        // The board underneath still needs the mouse
+        setMouseTransparent(true);
+    }
+
+    /**
+     * Set the block images to draw with, once they have been built. Until then, cleared blocks
+     * only flash.
+     *
+     * @param sprites the block images, at the size of the board's blocks
+     */
+    void setSprites(BlockSprites sprites) {
+        this.sprites = sprites;
+    }
+
+    /**
+     * Start animating a block being cleared
+     *
+     * @param x     column
+     * @param y     row
+     * @param val   the value displayed in the block
+     * @param delay how long to wait before the block starts to shrink, in milliseconds
+     */
+    void add(int x, int y, int val, double delay) {
+        // Previews are cleared with the block underneath them
+        if (val >= 100) {
+            val = 0;
+        } else if (val < 0) {
+            val = -1 - val;
+        }
+
+        if (count == cellX.length) {
+            var capacity = count * 2;
+            cellX = Arrays.copyOf(cellX, capacity);
+            cellY = Arrays.copyOf(cellY, capacity);
+            value = Arrays.copyOf(value, capacity);
+            startTime = Arrays.copyOf(startTime, capacity);
+        }
+
+        var start = System.nanoTime() + (long) (delay * 1_000_000);
+        cellX[count] = x;
+        cellY[count] = y;
+        value[count] = val;
+        startTime[count] = start;
+        count++;
+
+        // One sound for the whole clear, when the first block goes
+        soundTime = Math.min(soundTime, start);
+
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Draw every particle, and remove the ones that have finished
+     *
+     * @param now the time of the frame, in nanoseconds
+     */
+    private void render(long now) {
+        var gc = getGraphicsContext2D();
+        gc.clearRect(0, 0, getWidth(), getHeight());
+
+        if (now >= soundTime) {
+            soundTime = Long.MAX_VALUE;
+            Multimedia.playSound("clear.wav");
+        }
+
+        int i = 0;
+        while (i < count) {
+            var elapsed = now - startTime[i];
+            if (elapsed >= DURATION) {
+                // Finished, so move the last particle into its place
+                count--;
+                cellX[i] = cellX[count];
+                cellY[i] = cellY[count];
+                value[i] = value[count];
+                startTime[i] = startTime[count];
+                continue;
+            }
+
+            var left = cellX[i] * blockWidth;
+            var top = cellY[i] * blockHeight;
+            var progress = Math.max(elapsed, 0) / (double) DURATION;
+
+            // The block shrinks and spins away
+            var val = value[i];
+            if (val != 0 && sprites != null) {
+                var scale = 1 - progress;
+                var angle = Math.toRadians(90 * Interpolator.EASE_IN.interpolate(0.0, 1.0, progress));
+                var cos = Math.cos(angle) * scale;
+                var sin = Math.sin(angle) * scale;
+                gc.setTransform(cos, sin, -sin, cos, left + blockWidth / 2, top + blockHeight / 2);
+                sprites.draw(gc, val, false, -blockWidth / 2, -blockHeight / 2, blockWidth,
+                        blockHeight);
+                gc.setTransform(1, 0, 0, 1, 0, 0);
+            }
+
+            // The block flashes as it starts to go, then fades out
+            if (elapsed >= 0) {
+                gc.setGlobalAlpha(1 - Interpolator.EASE_IN.interpolate(0.0, 1.0, progress));
+                gc.setFill(FLASH_COLOURS[val]);
+                gc.fillRect(left, top, blockWidth, blockHeight);
+                gc.setGlobalAlpha(1);
+            }
+
+            i++;
+        }
+
+        if (count == 0 && soundTime == Long.MAX_VALUE) {
+            running = false;
+            timer.stop();
+        }
+    }
+}
@@ -1,10 +1,6 @@
 package uk.ac.soton.comp1206.component;
 
-import java.util.HashMap;
-import javafx.animation.FadeTransition;
-import javafx.animation.Interpolator;
-import javafx.animation.RotateTransition;
-import javafx.animation.ScaleTransition;
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
@@ -12,31 +8,27 @@ import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.image.Image;
-import javafx.scene.image.WritableImage;
-import javafx.scene.layout.Pane;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Rectangle;
-import javafx.util.Duration;
-import javafx.util.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.utils.Multimedia;
+import uk.ac.soton.comp1206.game.PieceShape;
 import uk.ac.soton.comp1206.utils.Vector2;
 
 /**
  * The Visual User Interface component representing a single block in the grid.
  * <p>
- * Extends Canvas and is responsible for drawing itself.
- * <p>
  * Displays an empty square (when the value is 0) or a coloured square depending on value.
  * <p>
- * The GameBlock value should be bound to a corresponding block in the Grid model.
+ * A block that belongs to a {@link GameBoard} is not drawn on its own: the board draws all its
+ * blocks on a single canvas, and the block is just a handle to one position on it, with its value
+ * read from the board's grid. A block without a board extends Canvas to draw itself, and its value
+ * should be bound to a corresponding block in the Grid model.
  */
 public class GameBlock extends Canvas {
 
     /**
-     * The set of colours for different pieces
+     * The set of colours for different pieces. Must have {@link PieceShape#MAX_COLOUR} + 1 entries.
      */
     public static final Color[] COLOURS = {
             Color.TRANSPARENT,
@@ -60,10 +52,8 @@ public class GameBlock extends Canvas {
             Color.GRAY,
 
     };
-    protected static final HashMap<Pair<Integer, Boolean>, Image> imageCache = new HashMap<>();
     private static final Logger logger = LogManager.getLogger(GameBlock.class);
     private static final double BASE_WIDTH = 100;
-    private static final Image BASE_IMAGE = Multimedia.getImage("block.png", 160);
     private final GameBoard gameBoard;
     private final double width;
     private final double height;
@@ -80,8 +70,11 @@ public class GameBlock extends Canvas {
      * The value of this block (0 = empty, otherwise specifies the colour to render as)
      */
     private final IntegerProperty value = new SimpleIntegerProperty(0);
-    private double corner_radius = 25;
     private boolean isPivot = false;
+    /**
+     * Whether a repaint is waiting for the block images to be built
+     */
+    private boolean waitingForSprites = false;
 
     /**
      * Create a new single Game Block
@@ -99,16 +92,16 @@ public class GameBlock extends Canvas {
         this.x = x;
         this.y = y;
 
-        this.corner_radius *= this.width / BASE_WIDTH;
+        if (gameBoard == null) {
+            // A canvas needs a fixed width and height
+            setWidth(width);
+            setHeight(height);
 
-        // A canvas needs a fixed width and height
-        setWidth(width);
-        setHeight(height);
-
-        // Do an initial paint
-        paint();
+            // Do an initial paint
+            paint();
+        }
 
-        // When a property is changed, repaint the canvas
+        // When a property is changed, repaint the block
         value.addListener(this::update);
         hovered.addListener(this::update);
     }
@@ -119,162 +112,97 @@ public class GameBlock extends Canvas {
      * @param ignored the updated property
      */
     private void update(Observable ignored) {
-        paint();
+        if (gameBoard == null) {
+            paint();
+            return;
+        }
+
+        // Let the board repaint this once per pulse, however many times it changes
+        gameBoard.requestPaint(x, y);
     }
 
     /**
-     * Handle painting of the block canvas
+     * Handle painting of the block canvas, or of this block on its board's canvas
      */
     public void paint() {
-        // If the block is empty, paint as empty
-
-        var val = value.get();
-        if (val == 0) {
-            //paintEmpty();
-            paintEmpty();
-        } else if (val < 0) { // Add red over existing color to show invalid placement
-            var col = COLOURS[-val - 1]; // find the original color of this block
-
-            if (val == -1) {
-                paintImage(Color.rgb(255, 0, 0, 0.7));
-            } else {
-                paintImage(Color.RED.interpolate(col, 0.3));
-            }
-
-        } else if (val >= 100) { // preview -> paint semi-transparent
-            var col = COLOURS[val - 100];
-            paintImage(Color.TRANSPARENT.interpolate(col, 0.7));
-
-        } else {
-            // If the block is not empty, paint with the colour represented by the value
-            paintImage(COLOURS[val]);
+        if (gameBoard != null) {
+            gameBoard.requestPaint(x, y);
+            return;
         }
 
-        if (isPivot) {
-            paintPivot();
+        var size = BlockSprites.pixelSize(width);
+        var sprites = BlockSprites.getIfReady(size);
+        if (sprites == null && !waitingForSprites) {
+            // Paint again once the images are built, rather than waiting for them here
+            waitingForSprites = true;
+            BlockSprites.preload(size).thenRunAsync(() -> {
+                waitingForSprites = false;
+                paint();
+            }, Platform::runLater);
         }
-    }
-
-    /**
-     * Paint this canvas empty
-     */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        // clear the canvas
-        gc.clearRect(0, 0, width, height);
 
-        // draw the border
-        gc.setLineWidth(1);
-        gc.setStroke(Color.rgb(150, 150, 150, 0.7));
-        gc.strokeRoundRect(0, 0, width, height, corner_radius, corner_radius);
+        paint(getGraphicsContext2D(), sprites, 0, 0, width, height, value.get(), hovered.get(),
+                isPivot);
     }
 
     /**
-     * Paints the block using an image, which is recolored using the given {@code Color}.
+     * Paint a block onto a canvas. The area of the block is cleared first.
      *
-     * @param color the color to paint the block with
+     * @param gc      the graphics context of the canvas
+     * @param sprites the block images to draw with, at the right size for the block, or
+     *                {@code null} if they aren't ready, in which case only empty blocks are drawn
+     * @param left    the x position of the block on the canvas
+     * @param top     the y position of the block on the canvas
+     * @param width   the width of the block
+     * @param height  the height of the block
+     * @param val     the value of the block
+     * @param hovered whether the block is hovered over
+     * @param pivot   whether to draw a dot in the middle
      */
-    private void paintImage(Color color) {
-        var gc = getGraphicsContext2D();
-
-        // clear the canvas
-        gc.clearRect(0, 0, width, height);
+    static void paint(GraphicsContext gc, BlockSprites sprites, double left, double top,
+            double width, double height, int val, boolean hovered, boolean pivot) {
+        var cornerRadius = 25 * width / BASE_WIDTH;
 
-        // Check if the image is already cached
-        var key = new Pair<>(value.get(), hovered.get());
-
-        Image image;
-
-        if (imageCache.containsKey(key)) {
-
-            // Get the cached image
-            image = imageCache.get(key);
-
-        } else {
-
-            // If the image is not yet cached, generate it
-            image = processImage(BASE_IMAGE, color);
-
-            logger.debug("Generated new image with properties: Color={}, Hovered={}", color, hovered.get());
-
-            // Cache the image for future use
-            imageCache.put(key, image);
+        // clear the block
+        gc.clearRect(left, top, width, height);
 
+        // If the block is empty, paint as empty
+        if (val == 0) {
+            paintEmpty(gc, left, top, width, height, cornerRadius);
+        } else if (sprites != null) {
+            // Otherwise, draw the block image recoloured for the value
+            sprites.draw(gc, val, hovered, left, top, width, height);
         }
 
-        // Draw the image
-        gc.drawImage(image, 0, 0, width, height);
+        if (pivot) {
+            paintPivot(gc, left, top, width, height, cornerRadius);
+        }
     }
 
     /**
-     * Generate a new image from the base image, recolored to the given {@linkplain Color}.
-     * <br>
-     * Iterates through all the pixels in the base image and changes their colour based on the
-     * colour in the base image.
-     *
-     * <ul>
-     *     <li>White pixels are replaced with the given {@linkplain Color}</li>
-     *     <li>Black pixels are replaced with a darkened version of the given {@linkplain Color}</li>
-     *     <li>Transparent pixels are left unchanged</li>
-     *     <li>All other pixels are slightly tinted with the given {@linkplain Color}.<br>
-     *     If this {@link GameBlock} is currently hovered, these pixels will be replaced with white</li>
-     * </ul>
-     * <p>
-     * This process takes quite a lot of processor time, so should be cached if used frequently.
-     *
-     * @param baseImage the base image to recolor
-     * @param color     the color to recolor the image with
-     * @return the generated image
+     * Paint a block empty
      */
-    private Image processImage(Image baseImage, Color color) {
-        // Create a new image of the same size as the base image
-        WritableImage newImage = new WritableImage((int) baseImage.getWidth(),
-                (int) baseImage.getHeight());
-        var writer = newImage.getPixelWriter();
-
-        // Get the pixel reader for the base image
-        var reader = baseImage.getPixelReader();
-
-        // Loop through all the pixels in the image and recolor them
-        for (int x = 0; x < newImage.getWidth(); x++) {
-            for (int y = 0; y < newImage.getHeight(); y++) {
-
-                if (reader.getColor(x, y).equals(Color.WHITE)) {  // The inside of the block
-                    writer.setColor(x, y, color);
-
-                } else if (reader.getColor(x, y).equals(Color.BLACK)) {  // The shadow at the bottom
-                    writer.setColor(x, y, color.interpolate(Color.BLACK, 0.2));
-
-                } else {  // the border of the block
-                    // Sets the border to white if the block is hovered over
-                    if (hovered.get() && reader.getColor(x, y).isOpaque()) {
-                        writer.setColor(x, y, Color.WHITE);
-                    } else {
-                        writer.setColor(x, y, reader.getColor(x, y).interpolate(color, 0.2));
-                    }
-                }
-
-            }
-        }
-
-        return newImage;
+    private static void paintEmpty(GraphicsContext gc, double left, double top, double width,
+            double height, double cornerRadius) {
+        // draw the border
+        gc.setLineWidth(1);
+        gc.setStroke(Color.rgb(150, 150, 150, 0.7));
+        gc.strokeRoundRect(left, top, width, height, cornerRadius, cornerRadius);
     }
 
-    private void paintPivot() {
+    private static void paintPivot(GraphicsContext gc, double left, double top, double width,
+            double height, double cornerRadius) {
         double pivotWidth = width / 5;
         double pivotHeight = height / 5;
 
-        var gc = getGraphicsContext2D();
-
         gc.setFill(Color.rgb(150, 150, 150, 0.75));
         gc.fillRoundRect(
-                width / 2 - pivotWidth / 2,
-                height / 2 - pivotHeight / 2,
+                left + width / 2 - pivotWidth / 2,
+                top + height / 2 - pivotHeight / 2,
                 pivotWidth,
                 pivotHeight,
-                corner_radius / 3,
-                corner_radius / 3
+                cornerRadius / 3,
+                cornerRadius / 3
         );
     }
 
@@ -302,9 +230,30 @@ public class GameBlock extends Canvas {
      * @return value
      */
     public int getValue() {
+        if (gameBoard != null) {
+            return gameBoard.getGrid().getDisplayed(x, y);
+        }
         return this.value.get();
     }
 
+    /**
+     * Check if the mouse or keyboard selection is on this block
+     *
+     * @return {@code true} if the block is hovered over
+     */
+    public boolean isHovered() {
+        return hovered.get();
+    }
+
+    /**
+     * Check if this is the pivot block
+     *
+     * @return {@code true} if a dot is drawn in the centre
+     */
+    public boolean isPivot() {
+        return isPivot;
+    }
+
     /**
      * Bind the value of this block to another property. Used to link the visual block to a
      * corresponding block in the Grid.
@@ -346,85 +295,4 @@ public class GameBlock extends Canvas {
         this.paint();
     }
 
-    /**
-     * Animate the block being cleared
-     *
-     * @param parent the parent pane to draw the animation on
-     * @param delay  the delay before the animation starts
-     */
-    public void clearAnimation(Pane parent, double delay) {
-
-        double duration = 300;
-        double fadeDuration = 300;
-
-        int val = this.value.get();
-        if (val >= 100) {
-            val = 0;
-        } else if (val < 0) {
-            val = -1 - val;
-        }
-
-        logger.debug("Fading out block at " + x + ", " + y + " with value " + value.get());
-
-        var child = new GameBlock(null, x, y, width, height);
-        child.value.set(val);
-        child.paint();
-
-        var childPos = gameBoard.localToParent(getLayoutX(), getLayoutY());
-
-        child.setLayoutX(childPos.getX());
-        child.setLayoutY(childPos.getY());
-
-        child.setMouseTransparent(true);
-
-        ScaleTransition scaleTransition = new ScaleTransition(Duration.millis(duration), child);
-        scaleTransition.setFromX(1);
-        scaleTransition.setFromY(1);
-        scaleTransition.setToX(0);
-        scaleTransition.setToY(0);
-        scaleTransition.setInterpolator(Interpolator.LINEAR);
-        scaleTransition.setDelay(Duration.millis(delay));
-
-        RotateTransition rotateTransition = new RotateTransition(Duration.millis(duration), child);
-        rotateTransition.setByAngle(90);
-        rotateTransition.setInterpolator(Interpolator.EASE_IN);
-        rotateTransition.setDelay(Duration.millis(delay));
-
-        scaleTransition.setOnFinished(event -> parent.getChildren().remove(child));
-
-        Rectangle rect = new Rectangle(width, height);
-
-        rect.setLayoutX(childPos.getX());
-        rect.setLayoutY(childPos.getY());
-
-        rect.setMouseTransparent(true);
-
-        rect.setFill(COLOURS[val].interpolate(Color.WHITE, 0.4));
-
-        FadeTransition appear = new FadeTransition(Duration.millis(1), rect);
-        appear.setFromValue(0);
-        appear.setToValue(1);
-        appear.setDelay(Duration.millis(delay));
-
-        rect.setOpacity(0);
-
-        FadeTransition fadeOut = new FadeTransition(Duration.millis(fadeDuration), rect);
-        fadeOut.setFromValue(1);
-        fadeOut.setToValue(0);
-        fadeOut.setInterpolator(Interpolator.EASE_IN);
-
-        appear.setOnFinished(e -> {
-            fadeOut.play();
-            Multimedia.playSound("clear.wav");
-        });
-        fadeOut.setOnFinished(e -> parent.getChildren().remove(rect));
-
-        parent.getChildren().add(child);
-        parent.getChildren().add(rect);
-
-        scaleTransition.play();
-        rotateTransition.play();
-        appear.play();
-    }
-
 }
\ No newline at end of file
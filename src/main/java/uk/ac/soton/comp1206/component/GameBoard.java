@@ -1,22 +1,29 @@
 package uk.ac.soton.comp1206.component;
 
-import java.util.Arrays;
-import java.util.Set;
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Pane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
 import uk.ac.soton.comp1206.event.BlockHoverEnterListener;
 import uk.ac.soton.comp1206.event.BlockHoverExitListener;
+import uk.ac.soton.comp1206.game.ClearedLines;
 import uk.ac.soton.comp1206.game.Grid;
 import uk.ac.soton.comp1206.utils.Vector2;
 
 /**
- * A GameBoard is a visual component to represent the visual GameBoard. It extends a GridPane to
- * hold a grid of GameBlocks.
+ * A GameBoard is a visual component to represent the visual GameBoard. It draws a grid of
+ * GameBlocks onto a single Canvas, so the number of nodes and the texture memory used do not grow
+ * with the size of the board.
+ * <p>
+ * Only the blocks that have changed are redrawn, at most once per pulse, and mouse positions are
+ * mapped to blocks arithmetically. The {@link GameBlock}s passed to the listeners are lightweight
+ * handles to a position on the board, created the first time each one is needed.
  * <p>
  * The GameBoard can hold an internal grid of its own, for example, for displaying an upcoming
  * block. It can also be linked to an external grid, for the main game board.
@@ -24,7 +31,7 @@ import uk.ac.soton.comp1206.utils.Vector2;
  * The GameBoard is only a visual representation and should not contain game logic or model logic in
  * it, which should take place in the Grid.
  */
-public class GameBoard extends GridPane {
+public class GameBoard extends Pane {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
     /**
@@ -48,7 +55,27 @@ public class GameBoard extends GridPane {
      */
     private final double height;
     /**
-     * The blocks inside the grid
+     * The width of each block
+     */
+    private final double blockWidth;
+    /**
+     * The height of each block
+     */
+    private final double blockHeight;
+    /**
+     * The canvas every block is drawn on
+     */
+    private Canvas canvas;
+    /**
+     * The block images at the size this board draws them, which may still be being built
+     */
+    private CompletableFuture<BlockSprites> sprites;
+    /**
+     * The canvas the line clear animations are drawn on, over the blocks
+     */
+    private ClearEffects effects;
+    /**
+     * The blocks inside the grid, created when they are first asked for
      */
     GameBlock[][] blocks;
 
@@ -61,6 +88,21 @@ public class GameBoard extends GridPane {
     private BlockHoverEnterListener blockHoverEnterListener;
     private BlockHoverExitListener blockHoverExitListener;
 
+    /**
+     * The blocks that have changed since the last repaint, indexed by {@code x * rows + y}
+     */
+    private BitSet blocksToPaint;
+
+    /**
+     * Whether a repaint of {@link #blocksToPaint} has been scheduled
+     */
+    private boolean paintScheduled = false;
+
+    /**
+     * The block the mouse is over, or -1 if it is not over the board
+     */
+    private int mouseX = -1;
+    private int mouseY = -1;
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -74,6 +116,8 @@ public class GameBoard extends GridPane {
         this.rows = grid.getRows();
         this.width = width;
         this.height = height;
+        this.blockWidth = width / cols;
+        this.blockHeight = height / rows;
         this.grid = grid;
 
         //Build the GameBoard
@@ -92,14 +136,7 @@ public class GameBoard extends GridPane {
      * @param height the visual height
      */
     public GameBoard(int cols, int rows, double width, double height) {
-        this.cols = cols;
-        this.rows = rows;
-        this.width = width;
-        this.height = height;
-        this.grid = new Grid(cols, rows);
-
-        //Build the GameBoard
-        build();
+        this(new Grid(cols, rows), width, height);
     }
 
     /**
@@ -110,61 +147,121 @@ public class GameBoard extends GridPane {
      * @return game block at the given column and row
      */
     public GameBlock getBlock(int x, int y) {
+        if (blocks[x][y] == null) {
+            createBlock(x, y);
+        }
         return blocks[x][y];
     }
 
     public GameBlock getBlock(Vector2 pos) {
-        return blocks[pos.x][pos.y];
+        return getBlock(pos.x, pos.y);
     }
 
     /**
-     * Build the GameBoard by creating a block at every x and y column and row
+     * Build the GameBoard by creating the canvas and drawing every block on it
      */
     protected void build() {
         logger.info("Building grid: {} x {}", cols, rows);
 
-        setMaxWidth(width);
-        setMaxHeight(height);
-
-        setGridLinesVisible(false);
+        setMinSize(width, height);
+        setPrefSize(width, height);
+        setMaxSize(width, height);
 
         blocks = new GameBlock[cols][rows];
+        sprites = BlockSprites.preload(BlockSprites.pixelSize(Math.max(blockWidth, blockHeight)));
+        blocksToPaint = new BitSet(cols * rows);
 
-        for (var y = 0; y < rows; y++) {
-            for (var x = 0; x < cols; x++) {
-                createBlock(x, y);
-            }
-        }
+        canvas = new Canvas(width, height);
+        effects = new ClearEffects(width, height, blockWidth, blockHeight);
+        getChildren().addAll(canvas, effects);
+
+        //Work out which block the mouse is on from its position
+        canvas.setOnMouseClicked(this::mouseClicked);
+        canvas.setOnMouseMoved(this::mouseMoved);
+        canvas.setOnMouseExited(e -> mouseOver(-1, -1));
+
+        //Redraw the blocks that change in the grid
+        grid.setOnGridUpdated(this::gridUpdated);
+
+        blocksToPaint.set(0, cols * rows);
+        paintRequestedBlocks();
+
+        //Let the line clear animations start once the images are ready
+        sprites.thenRunAsync(() -> effects.setSprites(BlockSprites.ready(sprites)),
+                Platform::runLater);
     }
 
     /**
-     * Create a block at the given x and y position in the GameBoard
+     * Create the handle for the block at the given x and y position in the GameBoard
      *
      * @param x column
      * @param y row
      */
     protected GameBlock createBlock(int x, int y) {
-        var blockWidth = width / cols;
-        var blockHeight = height / rows;
-
-        //Create a new GameBlock UI component
+        //Create a new GameBlock, drawn by this board
         GameBlock block = new GameBlock(this, x, y, blockWidth, blockHeight);
 
-        //Add to the GridPane
-        add(block, x, y);
-
         //Add to our block directory
         blocks[x][y] = block;
 
-        //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x, y));
+        return block;
+    }
 
-        //Add a mouse click handler to the block to trigger GameBoard blockClicked method
-        block.setOnMouseClicked((e) -> blockClicked(e, block));
-        block.setOnMouseEntered((e) -> blockHoverEntered(e, block));
-        block.setOnMouseExited((e) -> blockHoverExited(e, block));
+    /**
+     * Schedule the blocks changed in the grid to be repainted
+     *
+     * @param count the number of blocks changed
+     * @param xs    the columns of the changed blocks
+     * @param ys    the rows of the changed blocks
+     */
+    private void gridUpdated(int count, int[] xs, int[] ys) {
+        for (int i = 0; i < count; i++) {
+            requestPaint(xs[i], ys[i]);
+        }
+    }
 
-        return block;
+    /**
+     * Schedule a block to be repainted. All the blocks requested before the next pulse are painted
+     * together, so a block that changes several times in a row is only painted once.
+     *
+     * @param x column
+     * @param y row
+     */
+    void requestPaint(int x, int y) {
+        blocksToPaint.set(x * rows + y);
+        if (!paintScheduled) {
+            paintScheduled = true;
+            Platform.runLater(this::paintRequestedBlocks);
+        }
+    }
+
+    /**
+     * Repaint every block that has been requested since the last repaint. If the block images
+     * aren't ready yet, the blocks are painted once they are, rather than waiting for them here.
+     */
+    private void paintRequestedBlocks() {
+        paintScheduled = false;
+
+        var sprites = BlockSprites.ready(this.sprites);
+        if (sprites == null) {
+            if (!this.sprites.isDone()) {
+                paintScheduled = true;
+                this.sprites.whenCompleteAsync((atlas, e) -> paintRequestedBlocks(),
+                        Platform::runLater);
+            }
+            return;
+        }
+
+        var gc = canvas.getGraphicsContext2D();
+        for (int i = blocksToPaint.nextSetBit(0); i >= 0; i = blocksToPaint.nextSetBit(i + 1)) {
+            var x = i / rows;
+            var y = i % rows;
+            var block = blocks[x][y];
+            GameBlock.paint(gc, sprites, x * blockWidth, y * blockHeight, blockWidth, blockHeight,
+                    grid.getDisplayed(x, y), block != null && block.isHovered(),
+                    block != null && block.isPivot());
+        }
+        blocksToPaint.clear();
     }
 
     /**
@@ -215,12 +312,39 @@ public class GameBoard extends GridPane {
 
 
     /**
-     * Triggered when a block is clicked. Call the attached listener.
+     * Get the column under the given x position on the canvas
+     *
+     * @param x the x position
+     * @return the column, or -1 if the position is outside the board
+     */
+    private int columnAt(double x) {
+        var column = (int) Math.floor(x / blockWidth);
+        return column >= 0 && column < cols ? column : -1;
+    }
+
+    /**
+     * Get the row under the given y position on the canvas
+     *
+     * @param y the y position
+     * @return the row, or -1 if the position is outside the board
+     */
+    private int rowAt(double y) {
+        var row = (int) Math.floor(y / blockHeight);
+        return row >= 0 && row < rows ? row : -1;
+    }
+
+    /**
+     * Triggered when the board is clicked. Call the attached listener for the block clicked on.
      *
      * @param event mouse event
-     * @param block block clicked on
      */
-    private void blockClicked(MouseEvent event, GameBlock block) {
+    private void mouseClicked(MouseEvent event) {
+        var x = columnAt(event.getX());
+        var y = rowAt(event.getY());
+        if (x < 0 || y < 0) {
+            return;
+        }
+        var block = getBlock(x, y);
 
         if (blockLeftClickedListener != null && event.getButton() == MouseButton.PRIMARY) {
             //logger.info("Block clicked: {}, {}", block.getX(), block.getX());
@@ -237,12 +361,49 @@ public class GameBoard extends GridPane {
     }
 
     /**
-     * Triggered when a block is hovered over. Call the attached listener.
+     * Triggered when the mouse moves over the board
      *
      * @param event mouse event
+     */
+    private void mouseMoved(MouseEvent event) {
+        var x = columnAt(event.getX());
+        var y = rowAt(event.getY());
+        if (x < 0 || y < 0) {
+            mouseOver(-1, -1);
+        } else {
+            mouseOver(x, y);
+        }
+    }
+
+    /**
+     * Move the mouse to a new block, calling the attached listeners if it has changed
+     *
+     * @param x the column, or -1 if the mouse has left the board
+     * @param y the row, or -1 if the mouse has left the board
+     */
+    private void mouseOver(int x, int y) {
+        if (x == mouseX && y == mouseY) {
+            return;
+        }
+
+        if (mouseX >= 0) {
+            blockHoverExited(getBlock(mouseX, mouseY));
+        }
+
+        mouseX = x;
+        mouseY = y;
+
+        if (x >= 0) {
+            blockHoverEntered(getBlock(x, y));
+        }
+    }
+
+    /**
+     * Triggered when a block is hovered over. Call the attached listener.
+     *
      * @param block block hovered over
      */
-    private void blockHoverEntered(MouseEvent event, GameBlock block) {
+    private void blockHoverEntered(GameBlock block) {
         //logger.info("Mouse entered: {}", block);
         if (blockHoverEnterListener != null) {
             blockHoverEnterListener.blockEntered(block);
@@ -252,12 +413,11 @@ public class GameBoard extends GridPane {
     /**
      * Triggered when a block is unhovered. Call the attached listener.
      *
-     * @param event mouse event
      * @param block block unhovered
      */
-    private void blockHoverExited(MouseEvent event, GameBlock block) {
+    private void blockHoverExited(GameBlock block) {
         //logger.info("Mouse exited: {}", block);
-        if (blockHoverEnterListener != null) {
+        if (blockHoverExitListener != null) {
             blockHoverExitListener.blockExited(block);
         }
     }
@@ -274,19 +434,18 @@ public class GameBoard extends GridPane {
     /**
      * Start the animation when lines are cleared
      *
-     * @param blocks   the blocks to clear
-     * @param rootPane the window to add the animation to
+     * @param cleared the lines being cleared
      */
-    public void lineCleared(Set<Vector2> blocks, Pane rootPane) {
-        Vector2[] blocksArray = blocks.toArray(Vector2[]::new);
-        Arrays.sort(blocksArray, Vector2::compareTo);
+    public void lineCleared(ClearedLines cleared) {
         var delay = 100;
 
-        for (var block : blocksArray) {
-            getBlock(block).clearAnimation(rootPane, delay);
+        // The blocks are already in the order they should be animated in
+        for (int i = 0; i < cleared.getBlockCount(); i++) {
+            var x = cleared.getCellX(i);
+            var y = cleared.getCellY(i);
+            effects.add(x, y, grid.getDisplayed(x, y), delay);
             delay += 50;
         }
     }
 
-
 }
\ No newline at end of file
@@ -1,14 +1,18 @@
 package uk.ac.soton.comp1206.component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import javafx.application.Platform;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.ScoresList.Score.ScoreType;
 
 /**
- * Represents the leaderboard displayed in a multiplayer game
+ * Represents the leaderboard displayed in a multiplayer game. Players are looked up by username, so
+ * each score update only has to move that player's row.
  *
  * @author Adam Robson
  */
@@ -18,6 +22,11 @@ public class Leaderboard extends ScoresList {
 
     private final String myUsername;
 
+    /**
+     * The score of each player, by username
+     */
+    private final Map<String, Score> players = new HashMap<>();
+
     /**
      * Create an empty leaderboard
      *
@@ -48,14 +57,11 @@ public class Leaderboard extends ScoresList {
         var score = Integer.parseInt(split[1]);
 
         Platform.runLater(() -> {
-
-            for (Score s : scores) {
-                if (s.username.equals(username)) {
-                    s.score = score;
-                    break;
-                }
+            var player = players.get(username);
+            if (player != null && player.score != score) {
+                setScore(player, score);
+                rebuild();
             }
-            rebuild();
         });
     }
 
@@ -68,19 +74,19 @@ public class Leaderboard extends ScoresList {
     public void setScores(String scores) {
         var split = scores.split("\n");
         Platform.runLater(() -> {
-            this.scores.clear();
+            var newScores = new ArrayList<Score>(split.length);
             for (var score : split) {
                 var splitScore = score.split(":", 3);
 
                 if (splitScore[2].equals("DEAD")) {
-                    this.scores.add(
+                    newScores.add(
                             new ScoreWithLives(
                                     splitScore[0],
                                     Integer.parseInt(splitScore[1]),
                                     ScoreType.DIED,
                                     -1));
                 } else {
-                    this.scores.add(
+                    newScores.add(
                             new ScoreWithLives(
                                     splitScore[0],
                                     Integer.parseInt(splitScore[1]),
@@ -89,7 +95,14 @@ public class Leaderboard extends ScoresList {
                                     Integer.parseInt(splitScore[2])));
                 }
             }
-            rebuild();
+
+            players.clear();
+            for (var score : newScores) {
+                players.put(score.username, score);
+            }
+
+            // Replacing the whole list at once only updates the display once
+            this.scores.setAll(newScores);
         });
     }
 
@@ -100,13 +113,11 @@ public class Leaderboard extends ScoresList {
      */
     public void setDead(String username) {
         Platform.runLater(() -> {
-            for (Score s : scores) {
-                if (s.username.equals(username)) {
-                    s.type = ScoreType.DIED;
-                    break;
-                }
+            var player = players.get(username);
+            if (player != null) {
+                player.type = ScoreType.DIED;
+                rebuild();
             }
-            rebuild();
         });
     }
 
@@ -133,8 +144,7 @@ public class Leaderboard extends ScoresList {
      * @return a {@code String[]} containing the usernames of the top players
      */
     public String[] getTopPlayers(int limit) {
-        return scores.stream()
-                .sorted(ScoresList.scoreComparator)
+        return ranked()
                 .map(s -> s.username)
                 .filter(u -> !u.equals(myUsername))
                 .limit(limit)
@@ -38,10 +38,17 @@ public class OpponentBoard extends GameBoard {
 
         var valueArray = values.split(" ");
 
-        for (int i = 0; i < valueArray.length; i++) {
-            int row = i % getRowCount();
-            int column = i / getColumnCount();
-            grid.set(column, row, Integer.parseInt(valueArray[i]));
+        var rows = grid.getRows();
+
+        grid.beginUpdate();
+        try {
+            for (int i = 0; i < valueArray.length; i++) {
+                int row = i % rows;
+                int column = i / rows;
+                grid.set(column, row, Integer.parseInt(valueArray[i]));
+            }
+        } finally {
+            grid.commitUpdate();
         }
     }
 
@@ -2,16 +2,22 @@ package uk.ac.soton.comp1206.component;
 
 import uk.ac.soton.comp1206.game.GamePiece;
 import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PieceShape;
 
 
 /**
- * Represents the current and next pieces displayed in a game
+ * Represents the current and next pieces displayed in a game. The board is just big enough to hold
+ * the largest piece, with the piece's centre in the middle.
  */
 public class PieceBoard extends GameBoard {
 
+    /**
+     * The position of the middle of the board, where pieces are played
+     */
+    private final int centre;
 
     /**
-     * Create a new 3x3 piece board
+     * Create a new piece board
      *
      * @param width  the visual width
      * @param height the visual height
@@ -21,16 +27,17 @@ public class PieceBoard extends GameBoard {
     }
 
     /**
-     * Create a new 3x3 piece board
+     * Create a new piece board
      *
      * @param width     the visual width
      * @param height    the visual height
      * @param showPivot whether to show a dot in the middle
      */
     public PieceBoard(double width, double height, boolean showPivot) {
-        super(new Grid(3, 3), width, height);
+        super(new Grid(PieceShape.maxPieceSize(), PieceShape.maxPieceSize()), width, height);
+        centre = PieceShape.maxPieceSize() / 2;
         if (showPivot) {
-            getBlock(1, 1).setPivot();
+            getBlock(centre, centre).setPivot();
         }
     }
 
@@ -40,8 +47,10 @@ public class PieceBoard extends GameBoard {
      * @param piece the {@link GamePiece} to display
      */
     public void setPiece(GamePiece piece) {
+        grid.beginUpdate();
         grid.reset();
-        grid.playPiece(piece, 1, 1);
+        grid.playPiece(piece, centre, centre);
+        grid.commitUpdate();
     }
 
     /**
@@ -1,9 +1,16 @@
 package uk.ac.soton.comp1206.component;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javafx.animation.FadeTransition;
 import javafx.animation.TranslateTransition;
 import javafx.beans.property.ListProperty;
@@ -11,6 +18,7 @@ import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.geometry.HPos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
@@ -24,6 +32,11 @@ import org.apache.logging.log4j.Logger;
 
 /**
  * Represents a list of scores. Displays the scores using a {@code GridPane} to maintain alignment.
+ * <p>
+ * The scores are kept ranked in a sorted tree alongside the {@link #scores} list, so adding,
+ * removing or changing one score only costs O(log n). When the list changes, only the rows that
+ * have actually changed are touched: rows that move to a new rank slide to their new position, new
+ * rows fade in, and rows that drop out of the top {@value #MAX_LIST_LENGTH} are removed.
  *
  * @author Adam Robson
  */
@@ -43,6 +56,11 @@ public class ScoresList extends GridPane {
      */
     private static final Logger logger = LogManager.getLogger(ScoresList.class);
 
+    /**
+     * How long a row takes to move to its new rank
+     */
+    private static final Duration MOVE_DURATION = Duration.millis(300);
+
     /**
      * The scores to display
      */
@@ -54,6 +72,36 @@ public class ScoresList extends GridPane {
      */
     protected boolean frozen = true;
 
+    /**
+     * The scores in rank order: highest score first, then in the order they were added
+     */
+    private final TreeSet<Ranked> ranking = new TreeSet<>();
+
+    /**
+     * The entry in {@link #ranking} for each score
+     */
+    private final Map<Score, Ranked> ranked = new IdentityHashMap<>();
+
+    /**
+     * The rows currently displayed, in rank order
+     */
+    private final List<Row> rows = new ArrayList<>();
+
+    /**
+     * The row displayed for each score
+     */
+    private final Map<Score, Row> rowsByScore = new IdentityHashMap<>();
+
+    /**
+     * The number of scores added so far, used to keep the order of equal scores stable
+     */
+    private long added = 0;
+
+    /**
+     * Whether {@link #rebuild()} animates the rows it moves and adds
+     */
+    private boolean animateChanges = true;
+
     /**
      * Create a new {@code ScoresList} with placeholder scores
      */
@@ -93,7 +141,8 @@ public class ScoresList extends GridPane {
                 .collect(Collectors.toList());
 
         scores = new SimpleListProperty<>(FXCollections.observableArrayList(scoresList));
-        scores.addListener((ob, ov, nv) -> rebuild());
+        scoresList.forEach(this::rank);
+        scores.addListener(this::onScoresChanged);
 
         ColumnConstraints usernameColumn = new ColumnConstraints();
         usernameColumn.setHalignment(HPos.RIGHT);
@@ -112,6 +161,74 @@ public class ScoresList extends GridPane {
         //rebuild();
     }
 
+    /**
+     * Keep the ranking in step with the {@link #scores} list, then update the display
+     *
+     * @param change the change to the list
+     */
+    private void onScoresChanged(ListChangeListener.Change<? extends Score> change) {
+        while (change.next()) {
+            change.getRemoved().forEach(this::unrank);
+            change.getAddedSubList().forEach(this::rank);
+        }
+        rebuild();
+    }
+
+    /**
+     * Add a score to the ranking
+     *
+     * @param score the score
+     */
+    private void rank(Score score) {
+        var entry = new Ranked(score, score.score, added++);
+        var old = ranked.put(score, entry);
+        if (old != null) {
+            ranking.remove(old);
+        }
+        ranking.add(entry);
+    }
+
+    /**
+     * Remove a score from the ranking
+     *
+     * @param score the score
+     */
+    private void unrank(Score score) {
+        var entry = ranked.remove(score);
+        if (entry != null) {
+            ranking.remove(entry);
+        }
+    }
+
+    /**
+     * Change a score, moving it to its new rank. Scores in this list should only be changed
+     * through here, so that the ranking stays in order.
+     *
+     * @param score    the score to change
+     * @param newScore the new value
+     */
+    protected void setScore(Score score, int newScore) {
+        var entry = ranked.get(score);
+        if (entry == null) {
+            score.score = newScore;
+            return;
+        }
+
+        ranking.remove(entry);
+        score.score = newScore;
+        entry.key = newScore;
+        ranking.add(entry);
+    }
+
+    /**
+     * Get the scores in rank order, highest first
+     *
+     * @return the scores
+     */
+    protected Stream<Score> ranked() {
+        return ranking.stream().map(entry -> entry.score);
+    }
+
     /**
      * Loads scores from a list
      *
@@ -127,88 +244,234 @@ public class ScoresList extends GridPane {
     public void reveal() {
 
         frozen = false;
+        animateChanges = false;
         rebuild();
+        animateChanges = true;
 
-        var sortedScores = scores.stream()
-                .sorted(scoreComparator)
-                .toList();
-
-        for (int i = 0; i < sortedScores.size(); i++) {
-            sortedScores.get(i).animate(Duration.millis(i * 100));
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).score.animate(Duration.millis(i * 100));
         }
 
     }
 
     /**
-     * Rebuilds the scores list. Called whenever the scores list is modified.
+     * Updates the scores list. Called whenever the scores list is modified.
+     * <p>
+     * Only the rows that have changed are touched: rows for scores that are no longer shown are
+     * removed, new rows are added, and rows whose rank has changed are moved.
      */
     public void rebuild() {
         if (frozen) {
             return;
         }
 
-        logger.info("Rebuilding scores list");
-
-        var sortedScores = scores.stream()
-                .sorted(scoreComparator)
-                .limit(MAX_LIST_LENGTH)
-                .toList();
-
-        getChildren().clear();
+        // The scores that should be shown, in order
+        var shown = new ArrayList<Score>(MAX_LIST_LENGTH);
+        for (var entry : ranking) {
+            if (shown.size() == MAX_LIST_LENGTH) {
+                break;
+            }
+            shown.add(entry.score);
+        }
 
-        sortedScores.forEach((score) -> {
-            Node username = new Label(score.username);
-            username.getStyleClass().add("scores-item");
-            var separator = new Label(":");
-            separator.getStyleClass().add("scores-item");
-            var scoreLabel = new Label(Integer.toString(score.score));
-            scoreLabel.getStyleClass().add("scores-item");
+        // Remove the rows that are no longer shown
+        var shownSet = Collections.newSetFromMap(new IdentityHashMap<Score, Boolean>());
+        shownSet.addAll(shown);
+        for (var row : rows) {
+            if (!shownSet.contains(row.score)) {
+                getChildren().removeAll(row.nodes);
+                rowsByScore.remove(row.score);
+            }
+        }
 
-            String styleClass = score.getStyleClass();
+        // Update, move or add the rest
+        var previousY = new IdentityHashMap<Row, Double>();
+        var newRows = new ArrayList<Row>();
+        rows.clear();
+        for (int rank = 0; rank < shown.size(); rank++) {
+            var score = shown.get(rank);
+            var row = rowsByScore.get(score);
+
+            if (row != null && !row.matches(score)) {
+                // It needs different nodes, so replace them where they are
+                getChildren().removeAll(row.nodes);
+                rowsByScore.remove(score);
+                row = null;
+            }
 
-            if (!styleClass.isBlank()) {
-                username.getStyleClass().add(styleClass);
-                separator.getStyleClass().add(styleClass);
-                scoreLabel.getStyleClass().add(styleClass);
+            if (row == null) {
+                row = new Row(score, createNodes(score));
+                rowsByScore.put(score, row);
+                newRows.add(row);
+                for (int column = 0; column < row.nodes.length; column++) {
+                    add(row.nodes[column], column, rank);
+                }
+            } else {
+                row.update();
+                if (row.rank != rank) {
+                    previousY.put(row, row.nodes[0].getLayoutY());
+                    for (var node : row.nodes) {
+                        GridPane.setRowIndex(node, rank);
+                    }
+                }
             }
 
-            score.nodes = new Node[]{username, separator, scoreLabel};
+            row.rank = rank;
+            rows.add(row);
+        }
 
-            var row = this.getRowCount();
+        layout();
 
-            add(username, 0, row);
-            add(separator, 1, row);
-            add(scoreLabel, 2, row);
+        if (!animateChanges) {
+            return;
+        }
+
+        // Slide the moved rows from where they were, and fade in the new ones
+        previousY.forEach((row, y) -> {
+            var offset = y - row.nodes[0].getLayoutY();
+            for (var node : row.nodes) {
+                var move = new TranslateTransition(MOVE_DURATION, node);
+                move.setFromY(offset);
+                move.setToY(0);
+                move.play();
+            }
         });
+        for (var row : newRows) {
+            for (var node : row.nodes) {
+                var fade = new FadeTransition(MOVE_DURATION, node);
+                fade.setFromValue(0);
+                fade.setToValue(1);
+                fade.play();
+            }
+        }
+    }
 
-        layout();
+    /**
+     * Create the nodes to display a score: its username, a separator and the score itself, which
+     * must be a {@link Label}
+     *
+     * @param score the score
+     * @return the nodes, one for each column
+     */
+    protected Node[] createNodes(Score score) {
+        Node username = new Label(score.username);
+        username.getStyleClass().add("scores-item");
+        var separator = new Label(":");
+        separator.getStyleClass().add("scores-item");
+        var scoreLabel = new Label(Integer.toString(score.score));
+        scoreLabel.getStyleClass().add("scores-item");
+
+        String styleClass = score.getStyleClass();
+
+        if (!styleClass.isBlank()) {
+            username.getStyleClass().add(styleClass);
+            separator.getStyleClass().add(styleClass);
+            scoreLabel.getStyleClass().add(styleClass);
+        }
+
+        return new Node[]{username, separator, scoreLabel};
     }
 
     /**
-     * Returns the highest score in the list. (Uses {@code Stream.min()} because the comparator
-     * sorts in descending order.)
+     * Returns the highest score in the list.
      *
      * @return the highest score
      */
     public Score max() {
-        return scores.stream()
-                .sorted(scoreComparator)
-                .limit(MAX_LIST_LENGTH)
-                .min(scoreComparator)
-                .orElseThrow();
+        if (ranking.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        return ranking.first().score;
     }
 
     /**
-     * Returns the lowest score in the list.
+     * Returns the lowest score in the list, out of the scores that are displayed
      *
      * @return the lowest score
      */
     public Score min() {
-        return scores.stream()
-                .sorted(scoreComparator)
-                .limit(MAX_LIST_LENGTH)
-                .max(scoreComparator)
-                .orElseThrow();
+        if (ranking.isEmpty()) {
+            throw new NoSuchElementException();
+        }
+        if (ranking.size() <= MAX_LIST_LENGTH) {
+            return ranking.last().score;
+        }
+
+        var iterator = ranking.iterator();
+        for (int i = 1; i < MAX_LIST_LENGTH; i++) {
+            iterator.next();
+        }
+        return iterator.next().score;
+    }
+
+    /**
+     * A score's place in the ranking. The score it was ranked with is kept, so the ranking stays
+     * in order even if the score is changed without going through {@link #setScore}.
+     */
+    private static class Ranked implements Comparable<Ranked> {
+
+        private final Score score;
+        private int key;
+        private final long order;
+
+        Ranked(Score score, int key, long order) {
+            this.score = score;
+            this.key = key;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Ranked other) {
+            if (key != other.key) {
+                return Integer.compare(other.key, key);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    /**
+     * A row being displayed, and what it was showing when its nodes were made
+     */
+    private static class Row {
+
+        private final Score score;
+        private final Node[] nodes;
+        private final String username;
+        private final Score.ScoreType type;
+        private final String styleClass;
+        private int shownScore;
+        private int rank = -1;
+
+        Row(Score score, Node[] nodes) {
+            this.score = score;
+            this.nodes = nodes;
+            this.username = score.username;
+            this.type = score.type;
+            this.styleClass = score.getStyleClass();
+            this.shownScore = score.score;
+            score.nodes = nodes;
+        }
+
+        /**
+         * Check if this row's nodes can still display the score
+         *
+         * @param score the score
+         * @return {@code false} if the nodes need to be made again
+         */
+        boolean matches(Score score) {
+            return type == score.type && username.equals(score.username)
+                    && styleClass.equals(score.getStyleClass());
+        }
+
+        /**
+         * Update the score shown, if it has changed
+         */
+        void update() {
+            if (shownScore != score.score && nodes[2] instanceof Label label) {
+                shownScore = score.score;
+                label.setText(Integer.toString(shownScore));
+            }
+        }
     }
 
     /**
@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.ClearedLines;
+
+/**
+ * Passes the rows, columns and blocks cleared by a placement to the UI so animations can be played.
+ */
+public interface ClearedLinesListener {
+
+    /**
+     * Called when lines are cleared. The {@link ClearedLines} is reused for the next clear, so it
+     * should not be kept after this returns.
+     *
+     * @param cleared the lines that were cleared, with their blocks in animation order
+     */
+    void onLinesCleared(ClearedLines cleared);
+}
@@ -0,0 +1,17 @@
+package uk.ac.soton.comp1206.event;
+
+/**
+ * Called when the score, level, multiplier or lives of a game change
+ */
+public interface GameStatsListener {
+
+    /**
+     * Handle a change in the game's stats
+     *
+     * @param score      the current score
+     * @param level      the current level
+     * @param multiplier the current multiplier
+     * @param lives      the number of lives remaining
+     */
+    void onStatsChanged(int score, int level, int multiplier, int lives);
+}
@@ -0,0 +1,22 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * Called once each time a batch of changes to a {@link Grid} is committed, with every block whose
+ * displayed value was written during the batch
+ */
+public interface GridUpdateListener {
+
+    /**
+     * Handle a committed batch of grid changes. The arrays are reused between batches, so they are
+     * only valid until this returns and must not be kept. The listener may change the grid; those
+     * changes go into a new batch and do not affect the arrays passed here.
+     *
+     * @param count the number of changed blocks
+     * @param xs    the column of each changed block
+     * @param ys    the row of each changed block
+     */
+    void gridUpdated(int count, int[] xs, int[] ys);
+
+}
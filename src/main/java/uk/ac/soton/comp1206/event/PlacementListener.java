@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+
+/**
+ * Called when the player tries to place a piece, whether or not the piece could be placed
+ */
+public interface PlacementListener {
+
+    /**
+     * Handle a placement attempt
+     *
+     * @param piece  the piece the player tried to place
+     * @param x      the column the piece was placed at
+     * @param y      the row the piece was placed at
+     * @param placed {@code true} if the piece was placed, {@code false} if it did not fit
+     */
+    void onPlacement(GamePiece piece, int x, int y, boolean placed);
+}
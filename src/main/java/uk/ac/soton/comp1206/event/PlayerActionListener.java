@@ -0,0 +1,21 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.PlayerAction;
+
+/**
+ * Called for every action applied to a running game, before it takes effect. Used to record games
+ * so they can be replayed.
+ */
+public interface PlayerActionListener {
+
+    /**
+     * Handle a player action
+     *
+     * @param action the action
+     * @param a      the first argument: the column for {@link PlayerAction#PLACE}, or the number
+     *               of rotations for {@link PlayerAction#ROTATE}; otherwise 0
+     * @param b      the second argument: the row for {@link PlayerAction#PLACE}; otherwise 0
+     */
+    void onAction(PlayerAction action, int a, int b);
+
+}
@@ -0,0 +1,81 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.utils.SeededRandom;
+
+/**
+ * Deals pieces in bags: each bag holds a number of copies of every piece, shuffled with a
+ * Fisher-Yates shuffle. Every piece comes up equally often, and never more than twice the bag size
+ * apart.
+ * <p>
+ * A piece that would repeat the one before it, including the end of the previous bag, is swapped
+ * with a later, different piece in the bag. With one copy of each piece this means a piece is never
+ * dealt twice in a row; with more copies, only repeats at the very end of a bag can remain.
+ */
+public class BagGenerator extends QueuedPieceGenerator {
+
+    private final SeededRandom random;
+
+    /**
+     * The bag being shuffled, reused for every bag
+     */
+    private final int[] bag;
+
+    /**
+     * Create a generator with one of each piece per bag
+     *
+     * @param random the random number generator to shuffle with
+     */
+    public BagGenerator(SeededRandom random) {
+        this(random, 1);
+    }
+
+    /**
+     * Create a generator with the given number of copies of each piece per bag
+     *
+     * @param random the random number generator to shuffle with
+     * @param copies the number of copies of each piece in a bag
+     */
+    public BagGenerator(SeededRandom random, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("A bag must hold at least one of each piece");
+        }
+        this.random = random;
+        this.bag = new int[PieceShape.pieceCount() * copies];
+    }
+
+    /**
+     * Shuffle a new bag and add it to the queue
+     */
+    @Override
+    protected void generate() {
+        for (int i = 0; i < bag.length; i++) {
+            bag[i] = i % PieceShape.pieceCount();
+        }
+
+        for (int i = bag.length - 1; i > 0; i--) {
+            var j = random.nextInt(i + 1);
+            var temp = bag[i];
+            bag[i] = bag[j];
+            bag[j] = temp;
+        }
+
+        // Don't deal the same piece twice in a row, including across bags
+        var previous = last();
+        for (int i = 0; i < bag.length; i++) {
+            if (bag[i] == previous) {
+                for (int j = i + 1; j < bag.length; j++) {
+                    if (bag[j] != previous) {
+                        bag[i] = bag[j];
+                        bag[j] = previous;
+                        break;
+                    }
+                }
+            }
+            previous = bag[i];
+        }
+
+        for (var piece : bag) {
+            push(piece);
+        }
+    }
+}
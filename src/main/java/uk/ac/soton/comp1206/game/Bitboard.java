@@ -0,0 +1,377 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * A compact occupancy map of a game board, storing one bit per cell.
+ * <p>
+ * Boards of up to 64 cells are packed into a single {@code long} in row-major order (bit
+ * {@code y * cols + x}). For these boards a mask of every {@link PieceShape} is worked out when the
+ * board is created, so a placement check is a bounds check, then a single shift and AND.
+ * Larger boards use a {@code long[]}, with each row starting on a new word so that a row of a
+ * piece never has to be split across rows of the board.
+ * <p>
+ * The Bitboard only tracks whether a cell is filled, not its colour; the {@link Grid} keeps the
+ * values and uses this for the logic that only cares about occupancy, such as
+ * {@link Grid#canPlayPiece} and line clear detection.
+ */
+public class Bitboard {
+
+    /**
+     * The largest number of cells that can be stored in a single {@code long}
+     */
+    public static final int SMALL_BOARD_CELLS = Long.SIZE;
+
+    /**
+     * The number of columns in the board
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in the board
+     */
+    private final int rows;
+
+    /**
+     * Whether the whole board fits into {@link #bits}
+     */
+    private final boolean small;
+
+    /**
+     * The number of words used to store each row (only used for large boards)
+     */
+    private final int wordsPerRow;
+
+    /**
+     * Mask of a full row (small boards), or of the last word of a full row (large boards)
+     */
+    private final long rowMask;
+
+    /**
+     * Mask of a full column at x = 0 (small boards only)
+     */
+    private final long columnMask;
+
+    /**
+     * The occupancy of a small board
+     */
+    private long bits;
+
+    /**
+     * The occupancy of a large board, {@link #wordsPerRow} words for each row
+     */
+    private final long[] words;
+
+    /**
+     * The mask of each {@link PieceShape} with the top-left of its bounding box at (0, 0), indexed
+     * by shape id (small boards only). Never modified after creation, so it is shared by copies.
+     */
+    private final long[] shapeMasks;
+
+    /**
+     * Create a new, empty Bitboard
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public Bitboard(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.small = cols * rows <= SMALL_BOARD_CELLS;
+
+        if (small) {
+            wordsPerRow = 0;
+            words = null;
+            rowMask = lowBits(cols);
+
+            long column = 0;
+            for (int y = 0; y < rows; y++) {
+                column |= 1L << (y * cols);
+            }
+            columnMask = column;
+            shapeMasks = buildShapeMasks(cols);
+        } else {
+            wordsPerRow = (cols + Long.SIZE - 1) / Long.SIZE;
+            words = new long[wordsPerRow * rows];
+            rowMask = lowBits(cols - (wordsPerRow - 1) * Long.SIZE);
+            columnMask = 0;
+            shapeMasks = null;
+        }
+    }
+
+    /**
+     * Create a copy of another Bitboard
+     *
+     * @param other the board to copy
+     */
+    private Bitboard(Bitboard other) {
+        this.cols = other.cols;
+        this.rows = other.rows;
+        this.small = other.small;
+        this.wordsPerRow = other.wordsPerRow;
+        this.rowMask = other.rowMask;
+        this.columnMask = other.columnMask;
+        this.bits = other.bits;
+        this.words = other.words == null ? null : other.words.clone();
+        this.shapeMasks = other.shapeMasks;
+    }
+
+    /**
+     * Work out the mask of every shape on a small board with the given width
+     *
+     * @param cols the number of columns in the board
+     * @return the masks, indexed by shape id
+     */
+    private static long[] buildShapeMasks(int cols) {
+        var masks = new long[PieceShape.shapeCount()];
+
+        for (int id = 0; id < masks.length; id++) {
+            var shape = PieceShape.byId(id);
+            long mask = 0;
+            for (int i = 0; i < shape.getCellCount(); i++) {
+                mask |= 1L << ((shape.getCellY(i) - shape.getMinY()) * cols
+                        + shape.getCellX(i) - shape.getMinX());
+            }
+            masks[id] = mask;
+        }
+
+        return masks;
+    }
+
+    /**
+     * Get a mask with the lowest {@code n} bits set
+     *
+     * @param n the number of bits
+     * @return the mask
+     */
+    private static long lowBits(int n) {
+        return n >= Long.SIZE ? -1L : (1L << n) - 1;
+    }
+
+    /**
+     * Create an independent copy of this board
+     *
+     * @return the copy
+     */
+    public Bitboard copy() {
+        return new Bitboard(this);
+    }
+
+    /**
+     * Make this bitboard hold the same blocks as another of the same size, without allocating
+     *
+     * @param other the bitboard to copy from
+     */
+    public void copyFrom(Bitboard other) {
+        if (other.cols != cols || other.rows != rows) {
+            throw new IllegalArgumentException("Bitboards are different sizes");
+        }
+        if (small) {
+            bits = other.bits;
+        } else {
+            System.arraycopy(other.words, 0, words, 0, words.length);
+        }
+    }
+
+    /**
+     * Get the number of columns in this board
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this board
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Checks if the given cell is filled. The position must be within the bounds of the board.
+     *
+     * @param x column
+     * @param y row
+     * @return {@code true} if the cell is filled
+     */
+    public boolean get(int x, int y) {
+        if (small) {
+            return (bits >>> (y * cols + x) & 1L) != 0;
+        }
+        return (words[y * wordsPerRow + (x >>> 6)] >>> x & 1L) != 0;
+    }
+
+    /**
+     * Mark the given cell as filled or empty
+     *
+     * @param x      column
+     * @param y      row
+     * @param filled whether the cell is filled
+     */
+    public void set(int x, int y, boolean filled) {
+        if (small) {
+            long bit = 1L << (y * cols + x);
+            bits = filled ? bits | bit : bits & ~bit;
+        } else {
+            int index = y * wordsPerRow + (x >>> 6);
+            long bit = 1L << x;
+            words[index] = filled ? words[index] | bit : words[index] & ~bit;
+        }
+    }
+
+    /**
+     * Empty every cell in the board
+     */
+    public void clear() {
+        bits = 0;
+        if (words != null) {
+            Arrays.fill(words, 0);
+        }
+    }
+
+    /**
+     * Checks if the given shape fits into empty cells of the board when the top-left corner of its
+     * grid is placed at ({@code x}, {@code y}). Cells that would fall outside the board count as
+     * filled.
+     *
+     * @param shape the shape
+     * @param x     the column of the top-left corner of the shape's grid
+     * @param y     the row of the top-left corner of the shape's grid
+     * @return {@code true} if every cell of the shape is in bounds and empty
+     */
+    public boolean fits(PieceShape shape, int x, int y) {
+        int left = x + shape.getMinX();
+        int top = y + shape.getMinY();
+
+        if (left < 0 || top < 0 || x + shape.getMaxX() >= cols || y + shape.getMaxY() >= rows) {
+            return false;
+        }
+
+        if (small) {
+            return (bits & shapeMasks[shape.getId()] << (top * cols + left)) == 0;
+        }
+        return fits(shape.getRowMasks(), x, y);
+    }
+
+    /**
+     * Checks if the shape described by {@code rowMasks} fits into empty cells of the board when its
+     * top-left corner is placed at ({@code x}, {@code y}). Bit {@code dx} of {@code rowMasks[dy]}
+     * represents the cell at ({@code x + dx}, {@code y + dy}). Cells that would fall outside the
+     * board count as filled.
+     *
+     * @param rowMasks the shape, one mask per row
+     * @param x        the column of the top-left corner of the shape
+     * @param y        the row of the top-left corner of the shape
+     * @return {@code true} if every cell of the shape is in bounds and empty
+     */
+    public boolean fits(int[] rowMasks, int x, int y) {
+        long shape = 0;
+
+        for (int dy = 0; dy < rowMasks.length; dy++) {
+            int mask = rowMasks[dy];
+            if (mask == 0) {
+                continue;
+            }
+
+            // Bounds check against the leftmost and rightmost cell of this row of the shape
+            int row = y + dy;
+            int first = x + Integer.numberOfTrailingZeros(mask);
+            int last = x + 31 - Integer.numberOfLeadingZeros(mask);
+            if (row < 0 || row >= rows || first < 0 || last >= cols) {
+                return false;
+            }
+
+            long cells = Integer.toUnsignedLong(mask >>> Integer.numberOfTrailingZeros(mask));
+
+            if (small) {
+                shape |= cells << (row * cols + first);
+            } else if (!fitsRow(cells, first, row)) {
+                return false;
+            }
+        }
+
+        return (bits & shape) == 0;
+    }
+
+    /**
+     * Checks a single row of a shape against a large board
+     *
+     * @param cells the row of the shape, with bit 0 being its leftmost cell
+     * @param first the column of the leftmost cell
+     * @param row   the row of the board
+     * @return {@code true} if the cells are empty
+     */
+    private boolean fitsRow(long cells, int first, int row) {
+        int index = row * wordsPerRow + (first >>> 6);
+        int offset = first & 63;
+
+        // Rows of a shape are narrow, so they touch at most two words
+        if ((words[index] & cells << offset) != 0) {
+            return false;
+        }
+        return offset == 0 || (cells >>> (Long.SIZE - offset)) == 0
+                || (words[index + 1] & cells >>> (Long.SIZE - offset)) == 0;
+    }
+
+    /**
+     * Checks if every cell in the given row is filled
+     *
+     * @param y the row
+     * @return {@code true} if the row is full
+     */
+    public boolean isRowFull(int y) {
+        if (small) {
+            return (bits >>> (y * cols) & rowMask) == rowMask;
+        }
+
+        int base = y * wordsPerRow;
+        for (int w = 0; w < wordsPerRow - 1; w++) {
+            if (words[base + w] != -1L) {
+                return false;
+            }
+        }
+        return (words[base + wordsPerRow - 1] & rowMask) == rowMask;
+    }
+
+    /**
+     * Checks if every cell in the given column is filled
+     *
+     * @param x the column
+     * @return {@code true} if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        if (small) {
+            return (bits >>> x & columnMask) == columnMask;
+        }
+
+        int word = x >>> 6;
+        long bit = 1L << x;
+        for (int y = 0; y < rows; y++) {
+            if ((words[y * wordsPerRow + word] & bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of filled cells in the board
+     *
+     * @return the number of filled cells
+     */
+    public int count() {
+        if (small) {
+            return Long.bitCount(bits);
+        }
+
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,297 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The Board holds the placed blocks of a game: a set of integer values arranged in a 2D array, with
+ * rows and columns. It contains the rules for placing pieces and detecting full lines.
+ * <p>
+ * The Board does not depend on JavaFX, so it can be used on its own to run games without a UI. The
+ * {@link Grid} extends it with the properties needed to display the board.
+ */
+public class Board {
+
+    /**
+     * The number of columns in this board
+     */
+    private final int cols;
+
+    /**
+     * The number of rows in this board
+     */
+    private final int rows;
+
+    /**
+     * This stores the value of each placed block
+     */
+    private final int[][] staticGrid;
+
+    /**
+     * Which blocks of the {@link #staticGrid} are filled, packed into bit masks for fast placement
+     * checks and line clear detection
+     */
+    private final Bitboard occupancy;
+
+    /**
+     * The number of filled blocks in each row, kept up to date by {@link #set}
+     */
+    private final int[] rowCounts;
+
+    /**
+     * The number of filled blocks in each column, kept up to date by {@link #set}
+     */
+    private final int[] columnCounts;
+
+    /**
+     * Incremented every time a block changes between empty and filled, so that anything derived
+     * from the occupancy can tell when it is out of date
+     */
+    private int version = 0;
+
+    /**
+     * Create a new, empty Board with the specified number of columns and rows
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public Board(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+
+        staticGrid = new int[cols][rows];
+        occupancy = new Bitboard(cols, rows);
+        rowCounts = new int[rows];
+        columnCounts = new int[cols];
+    }
+
+    /**
+     * Update the value at the given x and y index within the board.
+     *
+     * @param x     column
+     * @param y     row
+     * @param value the new value
+     */
+    public void set(int x, int y, int value) {
+        var wasFilled = staticGrid[x][y] != 0;
+        var filled = value != 0;
+
+        staticGrid[x][y] = value;
+
+        if (filled != wasFilled) {
+            occupancy.set(x, y, filled);
+            var change = filled ? 1 : -1;
+            rowCounts[y] += change;
+            columnCounts[x] += change;
+            version++;
+        }
+    }
+
+    /**
+     * Get the occupancy version of this board. This changes whenever a block changes between empty
+     * and filled, and only then.
+     *
+     * @return the current version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the value at the given x and y index within the board
+     *
+     * @param x column
+     * @param y row
+     * @return the value, or -1 if the index is out of bounds
+     */
+    public int get(int x, int y) {
+        if (!inBounds(x, y)) {
+            //No such index
+            return -1;
+        }
+        return staticGrid[x][y];
+    }
+
+    /**
+     * Checks if the given (x, y) position is within the bounds of the board
+     *
+     * @param x the column
+     * @param y the row
+     * @return {@code true} if the position is within the bounds of the board, {@code false}
+     * otherwise
+     */
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && x < cols && y >= 0 && y < rows;
+    }
+
+    /**
+     * Resets all values to 0 (empty)
+     */
+    public void reset() {
+        for (var x = 0; x < cols; x++) {
+            for (var y = 0; y < rows; y++) {
+                set(x, y, 0);
+            }
+        }
+    }
+
+    /**
+     * Get the number of columns in this board
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in this board
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Checks if the given {@link GamePiece} can be played at the specified position
+     *
+     * @param piece the piece to check
+     * @param x     the x position
+     * @param y     the y position
+     * @return {@code true} if the piece can be played at the specified position, {@code false}
+     * otherwise
+     */
+    public boolean canPlayPiece(GamePiece piece, int x, int y) {
+        var shape = piece.getShape();
+
+        // offset to start from center of piece
+        return occupancy.fits(shape, x - shape.getPivotX(), y - shape.getPivotY());
+    }
+
+    /**
+     * Checks if every block in the given row is filled
+     *
+     * @param y the row
+     * @return {@code true} if the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowCounts[y] == cols;
+    }
+
+    /**
+     * Checks if every block in the given column is filled
+     *
+     * @param x the column
+     * @return {@code true} if the column is full
+     */
+    public boolean isColumnFull(int x) {
+        return columnCounts[x] == rows;
+    }
+
+    /**
+     * Find the full rows and columns after the given piece has been played at the given position.
+     * Only the lines the piece covers are checked, since no other line can have been filled by it.
+     *
+     * @param piece   the piece that was played
+     * @param x       the x position it was played at
+     * @param y       the y position it was played at
+     * @param cleared where to store the full lines; any previous contents are replaced
+     * @return the number of full lines
+     */
+    public int findClearedLines(GamePiece piece, int x, int y, ClearedLines cleared) {
+        var shape = piece.getShape();
+
+        x -= shape.getPivotX();
+        y -= shape.getPivotY(); // offset to start from center of piece
+
+        cleared.clear(cols, rows);
+
+        for (int row = Math.max(y + shape.getMinY(), 0);
+                row <= Math.min(y + shape.getMaxY(), rows - 1); row++) {
+            if (isRowFull(row)) {
+                cleared.addRow(row);
+            }
+        }
+
+        for (int column = Math.max(x + shape.getMinX(), 0);
+                column <= Math.min(x + shape.getMaxX(), cols - 1); column++) {
+            if (isColumnFull(column)) {
+                cleared.addColumn(column);
+            }
+        }
+
+        return cleared.getLineCount();
+    }
+
+    /**
+     * Empty every block in the given lines
+     *
+     * @param cleared the lines to empty
+     */
+    public void clearLines(ClearedLines cleared) {
+        for (int i = 0; i < cleared.getRowCount(); i++) {
+            var row = cleared.getRow(i);
+            for (int x = 0; x < cols; x++) {
+                set(x, row, 0);
+            }
+        }
+
+        for (int i = 0; i < cleared.getColumnCount(); i++) {
+            var column = cleared.getColumn(i);
+            for (int y = 0; y < rows; y++) {
+                if (staticGrid[column][y] != 0) {
+                    set(column, y, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the occupancy of this board, i.e. which blocks are filled. This should not be modified
+     * directly; use {@link Bitboard#copy()} to get a board that can be changed freely.
+     *
+     * @return the occupancy bitboard
+     */
+    public Bitboard getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Plays the given {@link GamePiece} at the specified position, relative to the center of the
+     * piece. This method does not check if the piece can be played at the specified position, which
+     * can be done with {@link Board#canPlayPiece}
+     *
+     * @param piece the piece to play
+     * @param x     the x position
+     * @param y     the y position
+     * @see Board#canPlayPiece
+     */
+    public void playPiece(GamePiece piece, int x, int y) {
+        var shape = piece.getShape();
+
+        x -= shape.getPivotX();
+        y -= shape.getPivotY(); // offset to start from center of piece
+
+        for (var i = 0; i < shape.getCellCount(); i++) {
+            set(x + shape.getCellX(i), y + shape.getCellY(i), shape.getValue());
+        }
+    }
+
+    /**
+     * Returns a string representation of the board, formatted as follows:
+     * <p>
+     * BOARD [value at (0, 0)] [value at (0, 1)] ... [value at (0, n)] [value at (1, 0)] ... [value
+     * at (m, n)]
+     * </p>
+     *
+     * @return the resulting string
+     */
+    public String toString() {
+        var sb = new StringBuilder("BOARD");
+        for (var x = 0; x < rows; x++) {
+            for (var y = 0; y < cols; y++) {
+                sb.append(" ").append(get(x, y));
+            }
+        }
+
+        return sb.toString();
+    }
+}
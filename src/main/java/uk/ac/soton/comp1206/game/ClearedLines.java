@@ -0,0 +1,252 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import uk.ac.soton.comp1206.utils.Vector2;
+
+/**
+ * The rows and columns cleared by placing a piece.
+ * <p>
+ * The indices are stored in plain {@code int} arrays, and an instance is meant to be reused for
+ * every placement (see {@link Board#findClearedLines}), so finding the cleared lines does not
+ * allocate anything. The individual blocks in the lines are also available, ordered by column then
+ * row (the order they are animated in); they are only worked out the first time they are asked
+ * for.
+ * <p>
+ * Because instances are reused, listeners should not keep a reference to one after they return.
+ */
+public class ClearedLines {
+
+    /**
+     * The cleared rows, in ascending order. Only the first {@link #rowCount} are valid.
+     */
+    private int[] rows = new int[4];
+
+    /**
+     * The cleared columns, in ascending order. Only the first {@link #columnCount} are valid.
+     */
+    private int[] columns = new int[4];
+
+    private int rowCount = 0;
+    private int columnCount = 0;
+
+    /**
+     * The size of the board the lines were cleared from
+     */
+    private int boardCols = 0;
+    private int boardRows = 0;
+
+    /**
+     * The positions of each cleared block, ordered by column then row
+     */
+    private int[] cellsX = new int[0];
+    private int[] cellsY = new int[0];
+
+    /**
+     * Whether {@link #cellsX} and {@link #cellsY} match the current lines
+     */
+    private boolean cellsValid = false;
+
+    /**
+     * Empty this set of lines, ready to be reused
+     *
+     * @param boardCols the number of columns in the board
+     * @param boardRows the number of rows in the board
+     */
+    void clear(int boardCols, int boardRows) {
+        this.boardCols = boardCols;
+        this.boardRows = boardRows;
+        rowCount = 0;
+        columnCount = 0;
+        cellsValid = false;
+    }
+
+    /**
+     * Add a cleared row. Rows must be added in ascending order.
+     *
+     * @param y the row
+     */
+    void addRow(int y) {
+        if (rowCount == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        rows[rowCount++] = y;
+    }
+
+    /**
+     * Add a cleared column. Columns must be added in ascending order.
+     *
+     * @param x the column
+     */
+    void addColumn(int x) {
+        if (columnCount == columns.length) {
+            columns = Arrays.copyOf(columns, columns.length * 2);
+        }
+        columns[columnCount++] = x;
+    }
+
+    /**
+     * Get the number of cleared rows
+     *
+     * @return the number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get a cleared row
+     *
+     * @param i the index, from 0 to {@link #getRowCount()} - 1
+     * @return the row
+     */
+    public int getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Get the number of cleared columns
+     *
+     * @return the number of columns
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Get a cleared column
+     *
+     * @param i the index, from 0 to {@link #getColumnCount()} - 1
+     * @return the column
+     */
+    public int getColumn(int i) {
+        return columns[i];
+    }
+
+    /**
+     * Get the total number of cleared lines (rows and columns)
+     *
+     * @return the number of lines
+     */
+    public int getLineCount() {
+        return rowCount + columnCount;
+    }
+
+    /**
+     * Get the number of distinct blocks in the cleared lines. Blocks where a cleared row and column
+     * cross are only counted once.
+     *
+     * @return the number of blocks
+     */
+    public int getBlockCount() {
+        return rowCount * boardCols + columnCount * boardRows - rowCount * columnCount;
+    }
+
+    /**
+     * Get the x position of a cleared block
+     *
+     * @param i the index, from 0 to {@link #getBlockCount()} - 1
+     * @return the column of the block
+     */
+    public int getCellX(int i) {
+        buildCells();
+        return cellsX[i];
+    }
+
+    /**
+     * Get the y position of a cleared block
+     *
+     * @param i the index, from 0 to {@link #getBlockCount()} - 1
+     * @return the row of the block
+     */
+    public int getCellY(int i) {
+        buildCells();
+        return cellsY[i];
+    }
+
+    /**
+     * Work out the position of every cleared block, ordered by column then row, if this has not
+     * already been done for the current lines
+     */
+    private void buildCells() {
+        if (cellsValid) {
+            return;
+        }
+
+        var count = getBlockCount();
+        if (cellsX.length < count) {
+            cellsX = new int[count];
+            cellsY = new int[count];
+        }
+
+        int i = 0;
+        int nextColumn = 0;
+        for (int x = 0; x < boardCols; x++) {
+            if (nextColumn < columnCount && columns[nextColumn] == x) {
+                // The whole column is cleared
+                nextColumn++;
+                for (int y = 0; y < boardRows; y++) {
+                    cellsX[i] = x;
+                    cellsY[i++] = y;
+                }
+            } else {
+                for (int r = 0; r < rowCount; r++) {
+                    cellsX[i] = x;
+                    cellsY[i++] = rows[r];
+                }
+            }
+        }
+
+        cellsValid = true;
+    }
+
+    /**
+     * Get every cleared block as a set of positions. This allocates a new set, so should only be
+     * used where a {@code Set} is really needed.
+     *
+     * @return the positions of the blocks
+     */
+    public Set<Vector2> toPositions() {
+        var count = getBlockCount();
+        var positions = new HashSet<Vector2>(count * 2);
+
+        for (int i = 0; i < count; i++) {
+            positions.add(new Vector2(getCellX(i), getCellY(i)));
+        }
+
+        return positions;
+    }
+
+    /**
+     * Checks if the block at the given position is in one of the cleared lines
+     *
+     * @param x column
+     * @param y row
+     * @return {@code true} if the block is cleared
+     */
+    public boolean contains(int x, int y) {
+        for (int i = 0; i < rowCount; i++) {
+            if (rows[i] == y) {
+                return true;
+            }
+        }
+        for (int i = 0; i < columnCount; i++) {
+            if (columns[i] == x) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a string representation of the cleared lines
+     *
+     * @return the rows and columns
+     */
+    @Override
+    public String toString() {
+        return "rows " + Arrays.toString(Arrays.copyOf(rows, rowCount))
+                + ", columns " + Arrays.toString(Arrays.copyOf(columns, columnCount));
+    }
+}
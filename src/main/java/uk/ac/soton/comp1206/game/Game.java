@@ -1,12 +1,10 @@
 package uk.ac.soton.comp1206.game;
 
 
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Queue;
-import java.util.Random;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 import javafx.application.Platform;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
@@ -14,25 +12,26 @@ import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.GameBlock;
+import uk.ac.soton.comp1206.event.ClearedLinesListener;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.GameOverListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.PieceBoardUpdateListener;
-import uk.ac.soton.comp1206.utils.Colour;
-import uk.ac.soton.comp1206.utils.Colour.TextColour;
-import uk.ac.soton.comp1206.utils.Colour.TextMode;
+import uk.ac.soton.comp1206.replay.InputRecorder;
+import uk.ac.soton.comp1206.replay.ReplayWriter;
+import uk.ac.soton.comp1206.utils.GameScheduler;
 import uk.ac.soton.comp1206.utils.Multimedia;
-import uk.ac.soton.comp1206.utils.Vector2;
+import uk.ac.soton.comp1206.utils.SeededRandom;
 
 /**
- * The Game class handles the main logic, state and properties of the TetrECS game. Methods to
- * manipulate the game state and to handle actions made by the player should take place inside this
- * class.
+ * The Game class connects a {@link GameEngine}, which handles the main logic and state of the
+ * TetrECS game, to the JavaFX UI. It turns actions made by the player on the UI into actions on the
+ * engine, and exposes the engine's state as properties the UI can bind to.
  */
 public class Game {
 
-    // Using the internal timer keeps the logic more separated from the UI, but the speedup button
-    // is less reliable using this method.
+    // Using the internal timer keeps the logic more separated from the UI, and runs on the
+    // scheduler shared by every game, so it suits games run without a scene.
     // When true, the timer is handled by the ChallengeScene instead
     /**
      * Whether to use the internal timer or not. If false, the game will use the timer from the UI.
@@ -43,12 +42,25 @@ public class Game {
     /**
      * The number of lives the player starts with
      */
-    public static final int MAX_LIVES = 3;
+    public static final int MAX_LIVES = GameEngine.MAX_LIVES;
+    /**
+     * The width and height of the standard board
+     */
+    public static final int DEFAULT_SIZE = 5;
+    /**
+     * The largest board size that is played interactively. Larger boards can still be simulated
+     * with a {@link GameEngine} on its own.
+     */
+    public static final int MAX_SIZE = 64;
+    /**
+     * How many times faster the internal timer runs while it is sped up
+     */
+    public static final int TIMER_SPEED_UP = 4;
     private static final Logger logger = LogManager.getLogger(Game.class);
     /**
      * The number of lives the player has left
      */
-    public final IntegerProperty lives = new SimpleIntegerProperty(3);
+    public final IntegerProperty lives = new SimpleIntegerProperty(MAX_LIVES);
     /**
      * The current level (player gains 1 level per 1000 points)
      */
@@ -75,29 +87,25 @@ public class Game {
      * The grid model linked to the game
      */
     final Grid grid;
-    private final Random random = new Random();
-    private final Queue<Integer> pieceQueue = new LinkedList<>();
+    /**
+     * The engine running the game's rules
+     */
+    final GameEngine engine;
     /**
      * The block that is currently selected
      */
     public GameBlock hoveredBlock = null;
-    // Pieces
-    GamePiece currentPiece = null;
-    GamePiece nextPiece = null;
     // Whether the player is currently controlling the game with the keyboard
     private boolean usingKeyboard = false;
+    // Record the player's actions, if enabled
+    private InputRecorder recorder;
+    private ReplayWriter replayWriter;
     // Listeners
     private PieceBoardUpdateListener pieceBoardUpdateListener;
-    private LineClearedListener lineClearedListener;
     private GameOverListener gameOverListener;
     private GameLoopListener gameLoopListener;
-    // Game actions are only allowed while the game is running
-    private boolean running = false;
-    // Timer
-    private Timer timer;
-    private double startTime;
-    private boolean timerFast = false;
-    private double currentTimerDelay;
+    // Timer, on the scheduler shared by every game
+    private final GameScheduler.Deadline timer = new GameScheduler.Deadline(this::onTimerExpired);
 
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -106,35 +114,81 @@ public class Game {
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
+        this(cols, rows, new SeededRandom());
+    }
+
+    /**
+     * Create a new game with the specified rows and columns, drawing pieces from the given random
+     * number generator. Games created with the same seed deal the same pieces.
+     *
+     * @param cols   number of columns
+     * @param rows   number of rows
+     * @param random the random number generator
+     */
+    public Game(int cols, int rows, SeededRandom random) {
         this.cols = cols;
         this.rows = rows;
 
         //Create a new grid model to represent the game state
         this.grid = new Grid(cols, rows);
 
-
+        //Run the rules on the grid, so the UI sees every change
+        this.engine = new GameEngine(grid, random);
+        engine.setOnPieceBoardUpdate((current, next) -> refreshPreview());
+        engine.setOnPlacement(this::onPlacement);
+        engine.setOnStatsChanged(this::onStatsChanged);
+        engine.setOnGameLoop(this::resetTimer);
+        engine.setOnGameOver(this::onDied);
+        engine.setOnPlayerAction(this::onPlayerAction);
     }
 
     /**
-     * Start the game
+     * Record every action in this game to the given stream, so it can be replayed. Must be called
+     * before the game starts. The recording ends when the game stops.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the recording cannot be started
      */
-    public void start() {
-        logger.info("Starting game");
-        initialiseGame();
-
-        running = true;
+    public void startRecording(OutputStream out) throws IOException {
+        if (engine.isRunning()) {
+            throw new IllegalStateException("Recording must start before the game");
+        }
+        recorder = new InputRecorder(out, engine.getRandom().getSeed(), cols, rows);
+    }
 
-        resetTimer();
-        refreshPreview();
+    /**
+     * Write a replay of this game to the given file, with keyframes so it can be scrubbed through.
+     * The replay ends when the game stops.
+     *
+     * @param path the file to write to
+     * @throws IOException if the file cannot be created
+     */
+    public void startReplay(Path path) throws IOException {
+        replayWriter = new ReplayWriter(path, engine, ReplayWriter.DEFAULT_INTERVAL);
     }
 
     /**
-     * Initialise a new game and set up anything that needs to be done at the start
+     * Pass an action on to anything recording the game
+     *
+     * @param action the action
+     * @param a      the first argument
+     * @param b      the second argument
      */
-    private void initialiseGame() {
-        logger.info("Initialising game");
+    private void onPlayerAction(PlayerAction action, int a, int b) {
+        if (recorder != null) {
+            recorder.onAction(action, a, b);
+        }
+        if (replayWriter != null) {
+            replayWriter.onAction(action, a, b);
+        }
+    }
 
-        nextPiece();
+    /**
+     * Start the game
+     */
+    public void start() {
+        engine.start();
+        refreshPreview();
     }
 
     /**
@@ -142,23 +196,13 @@ public class Game {
      * out
      */
     public void loseLife() {
-        lives.set(lives.get() - 1);
-        if (lives.get() < 0) {
-            onDied();
-        } else {
-            nextPiece();
-            multiplier.set(1);
-            resetTimer();
-        }
-
+        engine.loseLife();
     }
 
     /**
      * When the player loses all their lives
      */
     private void onDied() {
-        logger.info(Colour.colour("Game over!", TextColour.PURPLE, TextMode.BOLD));
-
         stop();
 
         gameOverListener.onGameOver();
@@ -168,15 +212,22 @@ public class Game {
      * End the game and reset the grid
      */
     public void stop() {
-        running = false;
+        engine.stop();
 
-        logger.info(Colour.colour("Game stopped.", TextColour.PURPLE, TextMode.BOLD));
+        timer.cancel();
 
-        grid.reset();
-
-        if (timer != null) {
-            timer.cancel();
+        try {
+            if (recorder != null) {
+                recorder.close();
+            }
+            if (replayWriter != null) {
+                replayWriter.close();
+            }
+        } catch (IOException e) {
+            logger.error("Failed to finish recording", e);
         }
+        recorder = null;
+        replayWriter = null;
     }
 
     /**
@@ -185,7 +236,39 @@ public class Game {
      * @return the current score
      */
     public int getScore() {
-        return score.get();
+        return engine.getScore();
+    }
+
+    /**
+     * Copy the stats from the engine into the properties the UI is bound to
+     *
+     * @param score      the current score
+     * @param level      the current level
+     * @param multiplier the current multiplier
+     * @param lives      the number of lives remaining
+     */
+    protected void onStatsChanged(int score, int level, int multiplier, int lives) {
+        this.lives.set(lives);
+        this.multiplier.set(multiplier);
+        this.score.set(score);
+        this.level.set(level);
+    }
+
+    /**
+     * Play the feedback for the player trying to place a piece
+     *
+     * @param piece  the piece the player tried to place
+     * @param x      the column
+     * @param y      the row
+     * @param placed whether the piece was placed
+     */
+    protected void onPlacement(GamePiece piece, int x, int y, boolean placed) {
+        if (placed) {
+            Multimedia.playSound("place.wav");
+            refreshPreview();
+        } else {
+            Multimedia.playSound("fail.wav", 1.5);
+        }
     }
 
     /**
@@ -196,54 +279,30 @@ public class Game {
 
         // Reset internal timer
         if (USE_INTERNAL_TIMER) {
-
-            if (timer != null) {
-                timer.cancel();
-            }
-
-            timer = new Timer();
-            var task = getTimerTask();
-
-            timer.schedule(task, getTimerDelayMillis());
-
-            startTime = System.currentTimeMillis();
-            currentTimerDelay = getTimerDelayMillis();
+            timer.restart(getTimerDelayMillis(), TimeUnit.MILLISECONDS);
         }
 
     }
 
-    protected TimerTask getTimerTask() {
-        return new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(Game.this::loseLife);
+    /**
+     * When the internal timer runs out, lose a life on the JavaFX thread. If the timer has been
+     * reset by the time that runs, the life is not lost.
+     */
+    private void onTimerExpired() {
+        Platform.runLater(() -> {
+            if (timer.hasExpired() && isRunning()) {
+                loseLife();
             }
-        };
+        });
     }
 
     /**
      * Sets whether the timer is sped up or not
      *
-     * @param fast if {@code true}, the timer will be sped up by 4x
+     * @param fast if {@code true}, the timer will be sped up by {@link #TIMER_SPEED_UP}x
      */
     public void setTimerSpeedUp(boolean fast) {
-
-        if (fast != timerFast) {
-            if (timer == null) {
-                return;
-            }
-            double currentTime = System.currentTimeMillis();
-            double elapsed = currentTime - startTime;
-            double remainingTime = currentTimerDelay - elapsed;
-            remainingTime *= fast ? 0.25 : 4;
-            currentTimerDelay = remainingTime;
-            startTime = currentTime;
-            timer.cancel();
-            timer = new Timer();
-            timer.schedule(getTimerTask(), (long) remainingTime);
-            timerFast = fast;
-        }
-
+        timer.setSpeed(fast ? TIMER_SPEED_UP : 1);
     }
 
     /**
@@ -252,31 +311,7 @@ public class Game {
      * @param gameBlock the block that was clicked
      */
     public void blockClicked(GameBlock gameBlock) {
-
-        if (!running) {
-            return;
-        }
-
-        //Get the position of this block
-        int x = gameBlock.getX();
-        int y = gameBlock.getY();
-
-        //Place the piece
-        if (grid.canPlayPiece(currentPiece, x, y)) {
-            logger.info(Colour.cyan(
-                    "Placing piece " + currentPiece.getValue() + " at (" + x + ", " + y + ")"));
-            grid.playPiece(currentPiece, x, y);
-            Multimedia.playSound("place.wav");
-            nextPiece();
-            afterPiece();
-            resetTimer();
-            refreshPreview();
-        } else {
-            logger.info(Colour.orange(
-                    "Cannot place piece " + currentPiece.getValue() + " at (" + x + ", " + y
-                            + ")"));
-            Multimedia.playSound("fail.wav", 1.5);
-        }
+        engine.place(gameBlock.getX(), gameBlock.getY());
     }
 
     /**
@@ -294,7 +329,7 @@ public class Game {
      * @param gameBlock the block that was hovered over
      */
     public void onBlockHoverEnter(GameBlock gameBlock) {
-        if (!running) {
+        if (!isRunning()) {
             return;
         }
         if (usingKeyboard) {
@@ -312,7 +347,7 @@ public class Game {
      * @param gameBlock the block that the mouse exited
      */
     public void onBlockHoverExit(GameBlock gameBlock) {
-        if (!running) {
+        if (!isRunning()) {
             return;
         }
 
@@ -325,30 +360,16 @@ public class Game {
      * Rotates the current piece clockwise
      */
     public void rotateCurrentPiece() {
-        if (!running) {
-            return;
-        }
-
-        //.info("Rotating current piece");
-
-        currentPiece.rotate();
-        refreshPreview();
+        engine.rotate(1);
     }
 
     /**
      * Rotates the current piece counter-clockwise
      */
     public void rotateCurrentPieceCounterClockwise() {
-        if (!running) {
-            return;
-        }
-
         logger.debug("Rotating current piece");
 
-        for (int i = 0; i < 3; i++) {
-            currentPiece.rotate();
-        }
-        refreshPreview();
+        engine.rotate(-1);
     }
 
     /**
@@ -356,16 +377,17 @@ public class Game {
      * orientation
      */
     void refreshPreview() {
-        if (!running) {
+        if (!isRunning()) {
             return;
         }
 
         // removed for spamming the console
         //logger.debug("refresh");
 
-        grid.resetAllTempValues();
         if (hoveredBlock != null) {
             previewPiece(hoveredBlock);
+        } else {
+            grid.clearPreview();
         }
         updatePieceBoards();
     }
@@ -376,70 +398,11 @@ public class Game {
      * @param gameBlock the block to display
      */
     private void previewPiece(GameBlock gameBlock) {
-        boolean valid = grid.canPlayPiece(currentPiece, gameBlock.getX(), gameBlock.getY());
+        var currentPiece = engine.getCurrentPiece();
+        boolean valid = engine.canPlace(gameBlock.getX(), gameBlock.getY());
         grid.previewPiece(currentPiece, gameBlock.getX(), gameBlock.getY(), valid);
     }
 
-    /**
-     * After a piece has been placed, checks for any cleared rows or columns and updates the score
-     */
-    void afterPiece() {
-        int clearedRows = 0;
-        var clearedBlocks = new HashSet<Vector2>();
-
-        // Check for cleared rows
-        for (int y = 0; y < rows; y++) {
-            boolean full = true;
-            for (int x = 0; x < cols; x++) {
-                if (grid.get(x, y) == 0) {
-                    full = false;
-                    break;
-                }
-            }
-            if (full) {
-                clearedRows++;
-                for (int x = 0; x < cols; x++) {
-                    clearedBlocks.add(new Vector2(x, y));
-                }
-            }
-        }
-
-        // Check for cleared columns
-        for (int x = 0; x < cols; x++) {
-            boolean full = true;
-            for (int y = 0; y < rows; y++) {
-                if (grid.get(x, y) == 0) {
-                    full = false;
-                    break;
-                }
-            }
-            if (full) {
-                clearedRows++;
-                for (int y = 0; y < rows; y++) {
-                    clearedBlocks.add(new Vector2(x, y));
-                }
-            }
-        }
-
-        score(clearedRows, clearedBlocks.size());
-
-        if (clearedRows > 0) {
-            logger.info(
-                    Colour.colour("Cleared " + clearedRows + (clearedRows == 1 ? " row" : " rows"),
-                            TextColour.GREEN, TextMode.ITALIC));
-
-            // Animate the blocks clearing
-            lineClearedListener.onLineCleared(clearedBlocks);
-
-            // Remove the blocks
-            for (var block : clearedBlocks) {
-                grid.set(block.x, block.y, 0);
-            }
-
-        }
-    }
-
-
     /**
      * Get the grid model inside this game representing the game state of the board
      *
@@ -449,6 +412,15 @@ public class Game {
         return grid;
     }
 
+    /**
+     * Get the engine running this game
+     *
+     * @return the engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
     /**
      * Get the number of columns in this game
      *
@@ -467,8 +439,11 @@ public class Game {
         return rows;
     }
 
+    /**
+     * Deal the next piece
+     */
     public void nextPiece() {
-        this.nextPiece(false);
+        engine.nextPiece();
     }
 
     /**
@@ -477,42 +452,7 @@ public class Game {
      * @param reset If true, the queue will be cleared and re-generated
      */
     public void nextPiece(boolean reset) {
-        //currentPiece = spawnPiece();
-
-        if (reset) {
-            pieceQueue.clear();
-            nextPiece = null;
-        }
-
-        // Create a list of the pieces in a random order
-        if (pieceQueue.isEmpty()) {
-            var pieces = new LinkedList<Integer>();
-            for (int i = 0; i < GamePiece.PIECES; i++) {
-                pieces.add(i);
-            }
-            while (!pieces.isEmpty()) {
-                pieceQueue.add(pieces.remove(random.nextInt(pieces.size())));
-            }
-
-            logger.info("New piece queue: {}", pieceQueue.toString());
-        }
-
-        // Take the next piece from the queue
-        currentPiece = nextPiece;
-        nextPiece = GamePiece.createPiece(pieceQueue.remove(), random.nextInt(4));
-
-        logger.info(
-                "Getting next piece: " + (currentPiece == null ? "null" : currentPiece.getValue()));
-
-        if (currentPiece == null || nextPiece.getValue() == currentPiece.getValue()) {
-            nextPiece();
-            return;
-        }
-
-        //currentPieceBoard.setPiece(currentPiece);
-        //nextPieceBoard.setPiece(nextPiece);
-
-        refreshPreview();
+        engine.nextPiece(reset);
     }
 
     /**
@@ -520,7 +460,8 @@ public class Game {
      */
     private void updatePieceBoards() {
         if (pieceBoardUpdateListener != null) {
-            pieceBoardUpdateListener.updatePieceBoards(currentPiece, nextPiece);
+            pieceBoardUpdateListener.updatePieceBoards(engine.getCurrentPiece(),
+                    engine.getNextPiece());
         }
     }
 
@@ -534,12 +475,21 @@ public class Game {
     }
 
     /**
-     * Set the listener for when a line is cleared
+     * Set the listener for when lines are cleared
+     *
+     * @param clearedLinesListener the listener to call
+     */
+    public void setOnLinesCleared(ClearedLinesListener clearedLinesListener) {
+        engine.setOnLinesCleared(clearedLinesListener);
+    }
+
+    /**
+     * Set the listener for when a line is cleared, receiving the cleared blocks as a set
      *
      * @param lineClearedListener the listener to call
      */
     public void setOnLineCleared(LineClearedListener lineClearedListener) {
-        this.lineClearedListener = lineClearedListener;
+        engine.setOnLineCleared(lineClearedListener);
     }
 
     /**
@@ -564,27 +514,14 @@ public class Game {
      * Swap the current piece with the next piece
      */
     public void swapPieces() {
-        if (!running) {
-            return;
-        }
-
-        var temp = currentPiece;
-        currentPiece = nextPiece;
-        nextPiece = temp;
-
-        refreshPreview();
+        engine.swap();
     }
 
     /**
      * Reset the board (for testing)
      */
     public void resetBoard() {
-        for (int x = 0; x < cols; x++) {
-            for (int y = 0; y < rows; y++) {
-                grid.set(x, y, 0);
-            }
-        }
-        nextPiece(true);
+        engine.resetBoard();
         refreshPreview();
     }
 
@@ -595,19 +532,7 @@ public class Game {
      * @param blocksCleared the number of blocks cleared by this action
      */
     public void score(int linesCleared, int blocksCleared) {
-
-        if (linesCleared > 0) {
-            int points = linesCleared * blocksCleared * 10 * multiplier.get();
-
-            score.set(points + score.get());
-            level.set(score.get() / 1000);
-            multiplier.set(multiplier.get() + 1);
-
-            logger.info(Colour.green(Colour.bold("Scored {} points")), points);
-        } else {
-            multiplier.set(1);
-        }
-
+        engine.score(linesCleared, blocksCleared);
     }
 
     /**
@@ -644,7 +569,7 @@ public class Game {
      * @return true if the game is running
      */
     public boolean isRunning() {
-        return running;
+        return engine.isRunning();
     }
 
     /**
@@ -653,7 +578,7 @@ public class Game {
      * @return timer duration in milliseconds
      */
     public long getTimerDelayMillis() {
-        return Math.max(2500, 12000 - 500 * level.get());
+        return engine.getTimerDelayMillis();
     }
 
     /**
@@ -664,4 +589,4 @@ public class Game {
     public Duration getTimerDelay() {
         return Duration.millis(getTimerDelayMillis());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,737 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.ClearedLinesListener;
+import uk.ac.soton.comp1206.event.GameLoopListener;
+import uk.ac.soton.comp1206.event.GameOverListener;
+import uk.ac.soton.comp1206.event.GameStatsListener;
+import uk.ac.soton.comp1206.event.LineClearedListener;
+import uk.ac.soton.comp1206.event.PieceBoardUpdateListener;
+import uk.ac.soton.comp1206.event.PlacementListener;
+import uk.ac.soton.comp1206.event.PlayerActionListener;
+import uk.ac.soton.comp1206.utils.Colour;
+import uk.ac.soton.comp1206.utils.Colour.TextColour;
+import uk.ac.soton.comp1206.utils.Colour.TextMode;
+import uk.ac.soton.comp1206.utils.SeededRandom;
+
+/**
+ * The GameEngine holds the rules and state of a game of TetrECS: the board, the piece queue,
+ * placement, scoring, lives and levels.
+ * <p>
+ * It does not depend on JavaFX. Actions are given as board coordinates, and changes are reported
+ * through plain listeners, so games can be simulated without a UI. The timer is not part of the
+ * engine; whatever is driving it should call {@link #loseLife()} when time runs out. The
+ * {@link Game} class adapts an engine for use with the JavaFX UI.
+ */
+public class GameEngine {
+
+    /**
+     * The number of lives the player starts with
+     */
+    public static final int MAX_LIVES = 3;
+
+    private static final Logger logger = LogManager.getLogger(GameEngine.class);
+
+    /**
+     * The board the game is played on
+     */
+    private final Board board;
+
+    private final SeededRandom random;
+
+    /**
+     * The lines cleared by the last placement, reused for every placement
+     */
+    private final ClearedLines clearedLines = new ClearedLines();
+
+    /**
+     * The legal placements of each piece on the board, updated lazily as the board changes
+     */
+    private final PlacementMap placements;
+
+    /**
+     * Decides the order of the pieces dealt by the default piece source
+     */
+    private PieceGenerator pieceGenerator;
+
+    /**
+     * Where new pieces come from. Defaults to pieces from the {@link #pieceGenerator}, in random
+     * rotations.
+     */
+    private Supplier<GamePiece> pieceSource = this::generatedPiece;
+
+    // Stats
+    private int score = 0;
+    private int level = 0;
+    private int multiplier = 1;
+    private int lives = MAX_LIVES;
+
+    // Pieces
+    private GamePiece currentPiece = null;
+    private GamePiece nextPiece = null;
+
+    // Game actions are only allowed while the game is running
+    private boolean running = false;
+
+    // Listeners
+    private PieceBoardUpdateListener pieceBoardUpdateListener;
+    private ClearedLinesListener clearedLinesListener;
+    private GameOverListener gameOverListener;
+    private GameLoopListener gameLoopListener;
+    private PlacementListener placementListener;
+    private GameStatsListener statsListener;
+    private PlayerActionListener playerActionListener;
+
+    /**
+     * Create a new engine with an empty board of the specified size
+     *
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public GameEngine(int cols, int rows) {
+        this(new Board(cols, rows));
+    }
+
+    /**
+     * Create a new engine with an empty board of the specified size, drawing pieces from the given
+     * random number generator. Two engines with generators created from the same seed deal the
+     * same pieces.
+     *
+     * @param cols   number of columns
+     * @param rows   number of rows
+     * @param random the random number generator
+     */
+    public GameEngine(int cols, int rows, SeededRandom random) {
+        this(new Board(cols, rows), random);
+    }
+
+    /**
+     * Create a new engine playing on the given board. The board can be a {@link Grid} so that the
+     * UI sees every change.
+     *
+     * @param board the board to play on
+     */
+    public GameEngine(Board board) {
+        this(board, new SeededRandom());
+    }
+
+    /**
+     * Create a new engine playing on the given board, drawing pieces from the given random number
+     * generator
+     *
+     * @param board  the board to play on
+     * @param random the random number generator
+     */
+    public GameEngine(Board board, SeededRandom random) {
+        this.board = board;
+        this.random = random;
+        this.pieceGenerator = new BagGenerator(random);
+        this.placements = new PlacementMap(board);
+    }
+
+    /**
+     * Start the game
+     */
+    public void start() {
+        logger.info("Starting game");
+
+        nextPiece();
+        running = true;
+
+        gameLoop();
+    }
+
+    /**
+     * End the game and reset the board
+     */
+    public void stop() {
+        running = false;
+
+        logger.info(Colour.colour("Game stopped.", TextColour.PURPLE, TextMode.BOLD));
+
+        board.reset();
+    }
+
+    /**
+     * Try to place the current piece at the given position
+     *
+     * @param x the column to place the centre of the piece at
+     * @param y the row to place the centre of the piece at
+     * @return {@code true} if the piece was placed, {@code false} if it did not fit or the game is
+     * not running
+     */
+    public boolean place(int x, int y) {
+        if (!running) {
+            return false;
+        }
+        action(PlayerAction.PLACE, x, y);
+
+        var piece = currentPiece;
+
+        if (!placements.canPlayPiece(piece, x, y)) {
+            logger.info(Colour.orange(
+                    "Cannot place piece " + piece.getValue() + " at (" + x + ", " + y + ")"));
+            if (placementListener != null) {
+                placementListener.onPlacement(piece, x, y, false);
+            }
+            return false;
+        }
+
+        logger.info(Colour.cyan("Placing piece " + piece.getValue() + " at (" + x + ", " + y + ")"));
+        board.playPiece(piece, x, y);
+        nextPiece();
+        afterPiece(piece, x, y);
+
+        if (placementListener != null) {
+            placementListener.onPlacement(piece, x, y, true);
+        }
+        gameLoop();
+        return true;
+    }
+
+    /**
+     * Checks if the current piece can be placed at the given position
+     *
+     * @param x the column of the centre of the piece
+     * @param y the row of the centre of the piece
+     * @return {@code true} if the piece fits there
+     */
+    public boolean canPlace(int x, int y) {
+        return currentPiece != null && placements.canPlayPiece(currentPiece, x, y);
+    }
+
+    /**
+     * Checks if the player has any move left, i.e. whether the current piece or the next piece
+     * (which can be swapped in) fits anywhere on the board in any rotation
+     *
+     * @return {@code true} if there is at least one legal placement
+     */
+    public boolean hasMoveLeft() {
+        return (currentPiece != null && placements.hasPlacement(currentPiece))
+                || (nextPiece != null && placements.hasPlacement(nextPiece));
+    }
+
+    /**
+     * Apply a recorded action
+     *
+     * @param action the action
+     * @param a      the first argument of the action
+     * @param b      the second argument of the action
+     * @see PlayerActionListener
+     */
+    public void apply(PlayerAction action, int a, int b) {
+        switch (action) {
+            case PLACE -> place(a, b);
+            case ROTATE -> rotate(a);
+            case SWAP -> swap();
+            case TIMER -> loseLife();
+        }
+    }
+
+    /**
+     * Take a snapshot of the whole state of the game
+     *
+     * @return the snapshot
+     */
+    public GameState saveState() {
+        var cols = board.getCols();
+        var rows = board.getRows();
+        var values = new int[cols * rows];
+        for (int x = 0; x < cols; x++) {
+            for (int y = 0; y < rows; y++) {
+                values[x * rows + y] = board.get(x, y);
+            }
+        }
+
+        return new GameState(cols, rows, values, pieceGenerator.saveState(),
+                currentPiece == null ? -1 : currentPiece.getShape().getId(),
+                nextPiece == null ? -1 : nextPiece.getShape().getId(),
+                score, level, multiplier, lives, random.getState(), running);
+    }
+
+    /**
+     * Restore a snapshot taken by {@link #saveState()}. The board must be the same size.
+     *
+     * @param state the snapshot
+     */
+    public void restoreState(GameState state) {
+        var cols = board.getCols();
+        var rows = board.getRows();
+        if (state.cols != cols || state.rows != rows) {
+            throw new IllegalArgumentException("Snapshot is for a different sized board");
+        }
+
+        if (board instanceof Grid grid) {
+            grid.beginUpdate();
+        }
+        for (int x = 0; x < cols; x++) {
+            for (int y = 0; y < rows; y++) {
+                board.set(x, y, state.values[x * rows + y]);
+            }
+        }
+        if (board instanceof Grid grid) {
+            grid.commitUpdate();
+        }
+
+        pieceGenerator.restoreState(state.generator);
+        currentPiece = pieceFromShape(state.currentShape);
+        nextPiece = pieceFromShape(state.nextShape);
+
+        score = state.score;
+        level = state.level;
+        multiplier = state.multiplier;
+        lives = state.lives;
+        random.setState(state.randomState);
+        running = state.running;
+
+        piecesChanged();
+        statsChanged();
+    }
+
+    /**
+     * Create a piece from a shape id in a snapshot
+     *
+     * @param id the shape id, or -1
+     * @return the piece, or {@code null} if the id is -1
+     */
+    private static GamePiece pieceFromShape(int id) {
+        if (id < 0) {
+            return null;
+        }
+        var shape = PieceShape.byId(id);
+        return GamePiece.createPiece(shape.getPiece(), shape.getRotation());
+    }
+
+    /**
+     * Tell the listener about an action
+     *
+     * @param action the action
+     * @param a      the first argument
+     * @param b      the second argument
+     */
+    private void action(PlayerAction action, int a, int b) {
+        if (playerActionListener != null) {
+            playerActionListener.onAction(action, a, b);
+        }
+    }
+
+    /**
+     * Play a move found by a {@link MoveSearch}, swapping and rotating the current piece as needed
+     *
+     * @param move the move to play
+     * @return {@code true} if the piece was placed, {@code false} if the move no longer applies
+     */
+    public boolean play(Move move) {
+        if (!running) {
+            return false;
+        }
+
+        var piece = move.isSwap() ? nextPiece : currentPiece;
+        if (piece == null || piece.getShape().getPiece() != move.getShape().getPiece()) {
+            return false;
+        }
+
+        if (move.isSwap()) {
+            swap();
+        }
+        rotate(move.getShape().getRotation() - currentPiece.getShape().getRotation());
+        return place(move.getX(), move.getY());
+    }
+
+    /**
+     * Rotate the current piece
+     *
+     * @param rotations the number of clockwise rotations; negative values rotate counter-clockwise
+     */
+    public void rotate(int rotations) {
+        if (!running) {
+            return;
+        }
+        action(PlayerAction.ROTATE, rotations, 0);
+
+        currentPiece.rotate(rotations);
+        piecesChanged();
+    }
+
+    /**
+     * Swap the current piece with the next piece
+     */
+    public void swap() {
+        if (!running) {
+            return;
+        }
+        action(PlayerAction.SWAP, 0, 0);
+
+        var temp = currentPiece;
+        currentPiece = nextPiece;
+        nextPiece = temp;
+
+        piecesChanged();
+    }
+
+    /**
+     * Reduce the player's life count by one and start a new round, or end the game if they have
+     * run out. This should be called when the timer runs out.
+     */
+    public void loseLife() {
+        if (running) {
+            action(PlayerAction.TIMER, 0, 0);
+        }
+        lives--;
+        if (lives < 0) {
+            statsChanged();
+            onDied();
+        } else {
+            nextPiece();
+            multiplier = 1;
+            statsChanged();
+            gameLoop();
+        }
+    }
+
+    /**
+     * When the player loses all their lives. The game stops, but the board is left as it is; the
+     * game over listener decides whether to {@link #stop()} and reset it.
+     */
+    private void onDied() {
+        logger.info(Colour.colour("Game over!", TextColour.PURPLE, TextMode.BOLD));
+
+        running = false;
+
+        if (gameOverListener != null) {
+            gameOverListener.onGameOver();
+        }
+    }
+
+    /**
+     * Deal the next piece
+     */
+    public void nextPiece() {
+        nextPiece(false);
+    }
+
+    /**
+     * Deal the next piece: the next piece becomes the current piece, and a new next piece is taken
+     * from the piece source.
+     *
+     * @param reset If true, the queue will be cleared and re-generated
+     */
+    public void nextPiece(boolean reset) {
+        if (reset) {
+            pieceGenerator.reset();
+            nextPiece = null;
+        }
+
+        currentPiece = nextPiece;
+        nextPiece = pieceSource.get();
+
+        // At the start of the game, there is no next piece to take yet
+        if (currentPiece == null) {
+            currentPiece = nextPiece;
+            nextPiece = pieceSource.get();
+        }
+
+        logger.info("Getting next piece: " + currentPiece.getValue());
+
+        piecesChanged();
+    }
+
+    /**
+     * The default piece source. Deals the next piece from the {@link #pieceGenerator}, in a random
+     * rotation.
+     *
+     * @return the next piece
+     */
+    private GamePiece generatedPiece() {
+        return GamePiece.createPiece(pieceGenerator.next(), random.nextInt(PieceShape.ROTATIONS));
+    }
+
+    /**
+     * After a piece has been placed, checks for any cleared rows or columns and updates the score
+     *
+     * @param piece the piece that was placed
+     * @param x     the column it was placed at
+     * @param y     the row it was placed at
+     */
+    void afterPiece(GamePiece piece, int x, int y) {
+        int clearedRows = board.findClearedLines(piece, x, y, clearedLines);
+
+        score(clearedRows, clearedLines.getBlockCount());
+
+        if (clearedRows > 0) {
+            logger.info(
+                    Colour.colour("Cleared " + clearedRows + (clearedRows == 1 ? " row" : " rows"),
+                            TextColour.GREEN, TextMode.ITALIC));
+
+            // Animate the blocks clearing
+            if (clearedLinesListener != null) {
+                clearedLinesListener.onLinesCleared(clearedLines);
+            }
+
+            // Remove the blocks
+            board.clearLines(clearedLines);
+        }
+    }
+
+    /**
+     * Update the score after the player plays a piece
+     *
+     * @param linesCleared  the number of lines cleared by this action
+     * @param blocksCleared the number of blocks cleared by this action
+     */
+    public void score(int linesCleared, int blocksCleared) {
+
+        if (linesCleared > 0) {
+            int points = linesCleared * blocksCleared * 10 * multiplier;
+
+            score += points;
+            level = score / 1000;
+            multiplier++;
+
+            logger.info(Colour.green(Colour.bold("Scored {} points")), points);
+        } else {
+            multiplier = 1;
+        }
+
+        statsChanged();
+    }
+
+    /**
+     * Empty the board and deal a fresh set of pieces (for testing)
+     */
+    public void resetBoard() {
+        board.reset();
+        nextPiece(true);
+    }
+
+    /**
+     * Tell the listener that the current or next piece has changed
+     */
+    private void piecesChanged() {
+        if (pieceBoardUpdateListener != null) {
+            pieceBoardUpdateListener.updatePieceBoards(currentPiece, nextPiece);
+        }
+    }
+
+    /**
+     * Tell the listener that the stats have changed
+     */
+    private void statsChanged() {
+        if (statsListener != null) {
+            statsListener.onStatsChanged(score, level, multiplier, lives);
+        }
+    }
+
+    /**
+     * Tell the listener that a new round has started, i.e. the timer should be reset
+     */
+    private void gameLoop() {
+        if (gameLoopListener != null) {
+            gameLoopListener.onGameLoop();
+        }
+    }
+
+    /**
+     * Get the board this game is played on
+     *
+     * @return the board
+     */
+    public Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Get the legal placements on the board
+     *
+     * @return the placement map
+     */
+    public PlacementMap getPlacements() {
+        return placements;
+    }
+
+    /**
+     * Get the random number generator pieces are drawn from
+     *
+     * @return the generator
+     */
+    public SeededRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Get the piece the player is currently placing
+     *
+     * @return the current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return currentPiece;
+    }
+
+    /**
+     * Get the piece that will be dealt next
+     *
+     * @return the next piece
+     */
+    public GamePiece getNextPiece() {
+        return nextPiece;
+    }
+
+    /**
+     * Get the current score
+     *
+     * @return the current score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the current level (player gains 1 level per 1000 points)
+     *
+     * @return the current level
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Get the current multiplier
+     *
+     * @return the current multiplier
+     */
+    public int getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Get the number of lives the player has left
+     *
+     * @return the number of lives
+     */
+    public int getLives() {
+        return lives;
+    }
+
+    /**
+     * Check if the game has started
+     *
+     * @return true if the game is running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Get the timer duration for the current level
+     *
+     * @return timer duration in milliseconds
+     */
+    public long getTimerDelayMillis() {
+        return Math.max(2500, 12000 - 500 * level);
+    }
+
+    /**
+     * Set the generator that decides the order of pieces from the default piece source. Should be
+     * set before the game starts.
+     *
+     * @param pieceGenerator the generator
+     */
+    public void setPieceGenerator(PieceGenerator pieceGenerator) {
+        this.pieceGenerator = pieceGenerator;
+    }
+
+    /**
+     * Get the generator that decides the order of pieces from the default piece source, for
+     * example to look at upcoming pieces
+     *
+     * @return the generator
+     */
+    public PieceGenerator getPieceGenerator() {
+        return pieceGenerator;
+    }
+
+    /**
+     * Set where new pieces come from, replacing the default generated pieces
+     *
+     * @param pieceSource the piece source; called each time a piece is dealt
+     */
+    public void setPieceSource(Supplier<GamePiece> pieceSource) {
+        this.pieceSource = pieceSource;
+    }
+
+    /**
+     * Set the listener for when the current or next piece changes
+     *
+     * @param pieceBoardUpdateListener the listener to call
+     */
+    public void setOnPieceBoardUpdate(PieceBoardUpdateListener pieceBoardUpdateListener) {
+        this.pieceBoardUpdateListener = pieceBoardUpdateListener;
+    }
+
+    /**
+     * Set the listener for when lines are cleared
+     *
+     * @param clearedLinesListener the listener to call
+     */
+    public void setOnLinesCleared(ClearedLinesListener clearedLinesListener) {
+        this.clearedLinesListener = clearedLinesListener;
+    }
+
+    /**
+     * Set the listener for when a line is cleared, receiving the cleared blocks as a set. This
+     * creates a new set for every clear; prefer {@link #setOnLinesCleared}.
+     *
+     * @param lineClearedListener the listener to call
+     */
+    public void setOnLineCleared(LineClearedListener lineClearedListener) {
+        this.clearedLinesListener = lineClearedListener == null ? null
+                : cleared -> lineClearedListener.onLineCleared(cleared.toPositions());
+    }
+
+    /**
+     * Set the listener for when the game ends
+     *
+     * @param gameOverListener the listener to call
+     */
+    public void setOnGameOver(GameOverListener gameOverListener) {
+        this.gameOverListener = gameOverListener;
+    }
+
+    /**
+     * Set the listener for when a new round starts (i.e. the timer should be reset)
+     *
+     * @param gameLoopListener the listener to call
+     */
+    public void setOnGameLoop(GameLoopListener gameLoopListener) {
+        this.gameLoopListener = gameLoopListener;
+    }
+
+    /**
+     * Set the listener for when the player tries to place a piece
+     *
+     * @param placementListener the listener to call
+     */
+    public void setOnPlacement(PlacementListener placementListener) {
+        this.placementListener = placementListener;
+    }
+
+    /**
+     * Set the listener for when the score, level, multiplier or lives change
+     *
+     * @param statsListener the listener to call
+     */
+    public void setOnStatsChanged(GameStatsListener statsListener) {
+        this.statsListener = statsListener;
+    }
+
+    /**
+     * Set the listener to call for every action applied to the game
+     *
+     * @param playerActionListener the listener
+     */
+    public void setOnPlayerAction(PlayerActionListener playerActionListener) {
+        this.playerActionListener = playerActionListener;
+    }
+}
@@ -1,56 +1,31 @@
 package uk.ac.soton.comp1206.game;
 
-import java.util.Random;
+import uk.ac.soton.comp1206.utils.SeededRandom;
 
 /**
  * Instances of GamePiece Represents the model of a specific Game Piece with it's block makeup.
  * <p>
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as
  * specified by it's number.
+ * <p>
+ * The shapes themselves are shared between all pieces (see {@link PieceShape}); a GamePiece only
+ * keeps track of which shape it currently has, so rotating a piece does not allocate anything.
  */
 public class GamePiece {
 
     /**
-     * The total number of pieces in this game
-     */
-    public static final int PIECES = 15;
-    private static final Random random = new Random();
-    /**
-     * The value of this piece
+     * The current shape of this piece, including its rotation
      */
-    private final int value;
+    private PieceShape shape;
 
     /**
-     * The name of this piece
-     */
-    private final String name;
-    /**
-     * The 2D grid representation of the shape of this piece
-     */
-    private int[][] blocks;
-
-    /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called
-     * directly, only via the factory.
+     * Create a new GamePiece with the given shape. Should not be called directly, only via the
+     * factory.
      *
-     * @param name   name of the piece
-     * @param blocks block makeup of the piece
-     * @param value  the value of this piece
+     * @param shape the starting shape of the piece
      */
-    private GamePiece(String name, int[][] blocks, int value) {
-        this.name = name;
-        this.blocks = blocks;
-        this.value = value;
-
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if (blocks[x][y] == 0) {
-                    continue;
-                }
-                blocks[x][y] = value;
-            }
-        }
+    private GamePiece(PieceShape shape) {
+        this.shape = shape;
     }
 
     /**
@@ -58,149 +33,10 @@ public class GamePiece {
      *
      * @param piece piece number
      * @return the created GamePiece
+     * @throws IndexOutOfBoundsException if there is no such piece
      */
     public static GamePiece createPiece(int piece) {
-
-        // Couldn't this have been stored in a data file? or like anything but this :/
-        switch (piece) {
-            //Line
-            case 0 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {1, 1, 1},
-                        {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
-            //C
-            case 1 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {1, 1, 1},
-                        {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
-            //Plus
-            case 2 -> {
-                int[][] blocks = {
-                        {0, 1, 0},
-                        {1, 1, 1},
-                        {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
-            //Dot
-            case 3 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {0, 1, 0},
-                        {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
-            //Square
-            case 4 -> {
-                int[][] blocks = {
-                        {1, 1, 0},
-                        {1, 1, 0},
-                        {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
-            //L
-            case 5 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {1, 1, 1},
-                        {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
-            //J
-            case 6 -> {
-                int[][] blocks = {
-                        {0, 0, 1},
-                        {1, 1, 1},
-                        {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
-            //S
-            case 7 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {0, 1, 1},
-                        {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
-
-            //Z
-            case 8 -> {
-                int[][] blocks = {
-                        {1, 1, 0},
-                        {0, 1, 1},
-                        {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
-
-            //T
-            case 9 -> {
-                int[][] blocks = {
-                        {0, 1, 0},
-                        {1, 1, 0},
-                        {0, 1, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
-
-            //X
-            case 10 -> {
-                int[][] blocks = {
-                        {1, 0, 1},
-                        {0, 1, 0},
-                        {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
-
-            //Corner
-            case 11 -> {
-                int[][] blocks = {
-                        {0, 0, 0},
-                        {1, 1, 0},
-                        {0, 1, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
-
-            //Inverse Corner
-            case 12 -> {
-                int[][] blocks = {
-                        {0, 1, 0},
-                        {1, 1, 0},
-                        {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
-
-            //Diagonal
-            case 13 -> {
-                int[][] blocks = {
-                        {1, 0, 0},
-                        {0, 1, 0},
-                        {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
-
-            //Double
-            case 14 -> {
-                int[][] blocks = {
-                        {0, 1, 0},
-                        {0, 1, 0},
-                        {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
-            }
-        }
-
-        //Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+        return createPiece(piece, 0);
     }
 
     /**
@@ -209,21 +45,20 @@ public class GamePiece {
      * @param piece    piece number
      * @param rotation number of times to rotate
      * @return the created GamePiece
+     * @throws IndexOutOfBoundsException if there is no such piece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
-
-        newPiece.rotate(rotation);
-        return newPiece;
+        return new GamePiece(PieceShape.of(piece, rotation));
     }
 
     /**
      * Create a new random GamePiece
      *
+     * @param random the random number generator to choose the piece with
      * @return the created GamePiece
      */
-    public static GamePiece createPiece() {
-        return createPiece(random.nextInt(PIECES));
+    public static GamePiece createPiece(SeededRandom random) {
+        return createPiece(random.nextInt(PieceShape.pieceCount()));
     }
 
     /**
@@ -232,58 +67,53 @@ public class GamePiece {
      * @return piece value
      */
     public int getValue() {
-        return value;
+        return shape.getValue();
     }
 
     /**
-     * Get the block makeup of this piece
+     * Get the current shape of this piece
+     *
+     * @return the shape, in its current rotation
+     */
+    public PieceShape getShape() {
+        return shape;
+    }
+
+    /**
+     * Get the block makeup of this piece. The returned array is shared between pieces and must not
+     * be modified.
      *
      * @return 2D grid of the blocks representing the piece shape
      */
     public int[][] getBlocks() {
-        return blocks;
+        return shape.getBlocks();
+    }
+
+    /**
+     * Get the shape of this piece as one bit mask per row: bit {@code x} of {@code rowMasks[y]} is
+     * set if {@code getBlocks()[x][y]} is filled
+     *
+     * @return the row masks of this piece
+     * @see Bitboard#fits
+     */
+    public int[] getRowMasks() {
+        return shape.getRowMasks();
     }
 
     /**
      * Rotate this piece the given number of rotations
      *
-     * @param rotations number of rotations
+     * @param rotations number of rotations; negative values rotate counter-clockwise
      */
     public void rotate(int rotations) {
-        for (int rotated = 0; rotated < rotations; rotated++) {
-            rotate();
-        }
+        shape = shape.rotated(rotations);
     }
 
     /**
-     * Rotate this piece once clockwise by rotating its 3x3 grid
+     * Rotate this piece once clockwise
      */
     public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-
-        // The way this was written annoyed me so i fixed it :)
-
-        /*
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
-
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
-
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
-        */
-
-        for (int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                rotated[blocks.length - 1 - y][x] = blocks[x][y];
-            }
-        }
-
-        blocks = rotated;
+        rotate(1);
     }
 
 
@@ -293,8 +123,8 @@ public class GamePiece {
      * @return the name of this piece
      */
     public String toString() {
-        return this.name;
+        return shape.getName();
     }
 
 
-}
\ No newline at end of file
+}
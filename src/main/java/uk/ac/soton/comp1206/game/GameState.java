@@ -0,0 +1,132 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import uk.ac.soton.comp1206.replay.Varint;
+
+/**
+ * A full snapshot of a {@link GameEngine}: the board, the pieces, the stats and the state of the
+ * random number generator. Restoring a snapshot and applying the same actions gives exactly the same
+ * game as the original.
+ *
+ * @see GameEngine#saveState()
+ * @see GameEngine#restoreState(GameState)
+ */
+public class GameState {
+
+    final int cols;
+    final int rows;
+
+    /**
+     * The value of each block, indexed by {@code x * rows + y}
+     */
+    final int[] values;
+
+    /**
+     * The state of the engine's {@link PieceGenerator}
+     */
+    final int[] generator;
+
+    /**
+     * The {@link PieceShape#getId() shape ids} of the current and next pieces, or -1 if there is no
+     * piece
+     */
+    final int currentShape;
+    final int nextShape;
+
+    final int score;
+    final int level;
+    final int multiplier;
+    final int lives;
+    final long randomState;
+    final boolean running;
+
+    GameState(int cols, int rows, int[] values, int[] generator, int currentShape, int nextShape,
+            int score, int level, int multiplier, int lives, long randomState, boolean running) {
+        this.cols = cols;
+        this.rows = rows;
+        this.values = values;
+        this.generator = generator;
+        this.currentShape = currentShape;
+        this.nextShape = nextShape;
+        this.score = score;
+        this.level = level;
+        this.multiplier = multiplier;
+        this.lives = lives;
+        this.randomState = randomState;
+        this.running = running;
+    }
+
+    /**
+     * Write this snapshot as a sequence of varints
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    public void write(OutputStream out) throws IOException {
+        Varint.writeUnsigned(out, cols);
+        Varint.writeUnsigned(out, rows);
+        for (var value : values) {
+            Varint.writeUnsigned(out, value);
+        }
+        Varint.writeUnsigned(out, generator.length);
+        for (var value : generator) {
+            Varint.writeSigned(out, value);
+        }
+        Varint.writeSigned(out, currentShape);
+        Varint.writeSigned(out, nextShape);
+        Varint.writeUnsigned(out, score);
+        Varint.writeUnsigned(out, level);
+        Varint.writeUnsigned(out, multiplier);
+        Varint.writeSigned(out, lives);
+        Varint.writeSigned(out, randomState);
+        out.write(running ? 1 : 0);
+    }
+
+    /**
+     * Read a snapshot written by {@link #write(OutputStream)}
+     *
+     * @param buffer the buffer to read from, starting at its position
+     * @return the snapshot
+     */
+    public static GameState read(ByteBuffer buffer) {
+        var cols = (int) Varint.readUnsigned(buffer);
+        var rows = (int) Varint.readUnsigned(buffer);
+        var values = new int[cols * rows];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) Varint.readUnsigned(buffer);
+        }
+        var generator = new int[(int) Varint.readUnsigned(buffer)];
+        for (int i = 0; i < generator.length; i++) {
+            generator[i] = (int) Varint.readSigned(buffer);
+        }
+        return new GameState(cols, rows, values, generator,
+                (int) Varint.readSigned(buffer),
+                (int) Varint.readSigned(buffer),
+                (int) Varint.readUnsigned(buffer),
+                (int) Varint.readUnsigned(buffer),
+                (int) Varint.readUnsigned(buffer),
+                (int) Varint.readSigned(buffer),
+                Varint.readSigned(buffer),
+                buffer.get() != 0);
+    }
+
+    /**
+     * Get the score at the time of the snapshot
+     *
+     * @return the score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * Get the number of lives left at the time of the snapshot
+     *
+     * @return the lives
+     */
+    public int getLives() {
+        return lives;
+    }
+}
@@ -1,9 +1,11 @@
 package uk.ac.soton.comp1206.game;
 
+import java.util.Arrays;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GridUpdateListener;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer
@@ -13,35 +15,77 @@ import org.apache.logging.log4j.Logger;
  * of the contents of the grid.
  * <p>
  * The Grid contains functions related to modifying the model, for example, placing a piece inside
- * the grid.
+ * the grid. The rules themselves are inherited from {@link Board}; the Grid adds the displayed
+ * values on top, including temporary previews of pieces.
  * <p>
  * The Grid should be linked to a GameBoard for its display.
+ * <p>
+ * Changes can be batched with {@link #beginUpdate()} and {@link #commitUpdate()}. While a batch is
+ * open, the displayed values are only recorded; on commit each changed property is set once, with
+ * its final value, and a single {@link GridUpdateListener} notification is sent.
  */
-public class Grid {
+public class Grid extends Board {
 
     private static final Logger logger = LogManager.getLogger(Grid.class);
 
     /**
-     * The number of columns in this grid
+     * The value displayed for each block, including previews
      */
-    private final int cols;
+    private final int[][] displayed;
 
     /**
-     * The number of rows in this grid
+     * The property for each {@code GameBlock} in the grid, created when it is first asked for. If a
+     * value is modified, it is automatically updated in the UI
      */
-    private final int rows;
+    private final SimpleIntegerProperty[][] grid;
 
     /**
-     * This stores the value of each {@code GameBlock} in the grid. If a value is modified, it is
-     * automatically updated in the UI
+     * The blocks covered by the preview currently shown, so that moving the preview only has to
+     * touch the blocks that change
      */
-    private final SimpleIntegerProperty[][] grid;
+    private final PreviewFootprint preview = new PreviewFootprint();
+
+    /**
+     * A scratch footprint used while working out the next preview
+     */
+    private final PreviewFootprint nextPreview = new PreviewFootprint();
 
     /**
-     * This stores the value of each block in respect to the game's internal logic, i.e. only the
-     * fully placed pieces, not previews
+     * The number of batches currently open. Nested batches are only committed by the outermost
+     * {@link #commitUpdate()}.
      */
-    private final int[][] staticGrid;
+    private int batchDepth = 0;
+
+    /**
+     * Whether each block has been written during the current batch, indexed by
+     * {@code x * rows + y}
+     */
+    private final boolean[] dirty;
+
+    /**
+     * The blocks written during the current batch, in the order they were first written
+     */
+    private int[] dirtyX = new int[16];
+    private int[] dirtyY = new int[16];
+    private int dirtyCount = 0;
+
+    /**
+     * Arrays to record the next batch in, left over from the last batch committed, or
+     * {@code null} if they are still in use
+     */
+    private int[] spareX = null;
+    private int[] spareY = null;
+
+    /**
+     * Whether a committed batch is being passed to the bound properties and the listener, which
+     * may change the grid again
+     */
+    private boolean notifying = false;
+
+    /**
+     * The listener to call when a batch is committed
+     */
+    private GridUpdateListener gridUpdateListener;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -50,232 +94,371 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
-        this.cols = cols;
-        this.rows = rows;
+        super(cols, rows);
 
-        //Create the grid itself
+        //Create the grid itself. The properties are only created when something binds to them, so
+        //large grids do not need an object per block
+        displayed = new int[cols][rows];
         grid = new SimpleIntegerProperty[cols][rows];
-        staticGrid = new int[cols][rows];
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for (var y = 0; y < rows; y++) {
-            for (var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
-                staticGrid[x][y] = 0;
-            }
-        }
+        dirty = new boolean[cols * rows];
     }
 
     /**
-     * Get the Integer property contained inside the grid at a given row and column index. Can be
-     * used for binding.
-     *
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * Start a batch of changes. Until the matching {@link #commitUpdate()}, changes to the displayed
+     * values are held back, so a block written several times is only updated once.
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void beginUpdate() {
+        batchDepth++;
     }
 
     /**
-     * Update the value at the given x and y index within the grid.
+     * Finish a batch of changes started by {@link #beginUpdate()}. If this closes the outermost
+     * batch, every changed block is updated with its final value and the
+     * {@link GridUpdateListener} is called once.
+     */
+    public void commitUpdate() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("No update in progress");
+        }
+        if (--batchDepth > 0 || dirtyCount == 0) {
+            return;
+        }
+
+        // Take the blocks written in this batch, so any changes made while notifying are
+        // recorded in a new batch rather than over the arrays being read
+        var count = dirtyCount;
+        var xs = dirtyX;
+        var ys = dirtyY;
+        if (!notifying && spareX != null && spareX.length >= xs.length) {
+            dirtyX = spareX;
+            dirtyY = spareY;
+        } else {
+            dirtyX = new int[xs.length];
+            dirtyY = new int[ys.length];
+        }
+        spareX = null;
+        spareY = null;
+        dirtyCount = 0;
+
+        for (var i = 0; i < count; i++) {
+            dirty[xs[i] * getRows() + ys[i]] = false;
+        }
+
+        var wasNotifying = notifying;
+        notifying = true;
+        try {
+            for (var i = 0; i < count; i++) {
+                var x = xs[i];
+                var y = ys[i];
+                if (grid[x][y] != null) {
+                    grid[x][y].set(displayed[x][y]);
+                }
+            }
+
+            if (gridUpdateListener != null) {
+                gridUpdateListener.gridUpdated(count, xs, ys);
+            }
+        } finally {
+            notifying = wasNotifying;
+        }
+
+        // Nothing is reading these any more, so the next batch can use them
+        spareX = xs;
+        spareY = ys;
+    }
+
+    /**
+     * Set the listener to call each time a batch of changes is committed
      *
-     * @param x     column
-     * @param y     row
-     * @param value the new value
+     * @param listener the listener
      */
-    public void set(int x, int y, int value) {
-        grid[x][y].set(value);
-        staticGrid[x][y] = value;
+    public void setOnGridUpdated(GridUpdateListener listener) {
+        this.gridUpdateListener = listener;
     }
 
     /**
-     * Temporarily update the displayed value at the given x and y index within the grid. This can
-     * be reverted by calling {@link #resetAllTempValues()}
+     * Change the displayed value of a block. If a batch is open, the change is published when it is
+     * committed; otherwise it is published straight away.
      *
      * @param x     column
      * @param y     row
-     * @param value the new value
+     * @param value the value to display
      */
-    public void setPreview(int x, int y, int value) {
-        if (value == -1) {
-            grid[x][y].set(-staticGrid[x][y] - 1);
+    private void display(int x, int y, int value) {
+        if (displayed[x][y] == value) {
             return;
         }
+        displayed[x][y] = value;
 
-        grid[x][y].set(value + 100);
+        if (batchDepth == 0) {
+            beginUpdate();
+            markDirty(x, y);
+            commitUpdate();
+        } else {
+            markDirty(x, y);
+        }
     }
 
     /**
-     * Get the value represented at the given x and y index within the grid
+     * Add a block to the blocks changed in the current batch, if it is not already there
      *
      * @param x column
      * @param y row
-     * @return the value, or -1 if the index is out of bounds
      */
-    public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return staticGrid[x][y];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            //No such index
-            return -1;
+    private void markDirty(int x, int y) {
+        var index = x * getRows() + y;
+        if (!dirty[index]) {
+            dirty[index] = true;
+            if (dirtyCount == dirtyX.length) {
+                dirtyX = Arrays.copyOf(dirtyX, dirtyCount * 2);
+                dirtyY = Arrays.copyOf(dirtyY, dirtyCount * 2);
+            }
+            dirtyX[dirtyCount] = x;
+            dirtyY[dirtyCount] = y;
+            dirtyCount++;
         }
     }
 
     /**
-     * Checks if the given (x, y) position is within the bounds of the grid
+     * Get the Integer property contained inside the grid at a given row and column index. Can be
+     * used for binding.
      *
-     * @param x the column
-     * @param y the row
-     * @return {@code true} if the position is within the bounds of the grid, {@code false}
-     * otherwise
+     * @param x column
+     * @param y row
+     * @return the IntegerProperty at the given x and y in this grid
      */
-    public boolean inBounds(int x, int y) {
-        return x >= 0 && x < cols && y >= 0 && y < rows;
+    public IntegerProperty getGridProperty(int x, int y) {
+        if (grid[x][y] == null) {
+            grid[x][y] = new SimpleIntegerProperty(displayed[x][y]);
+        }
+        return grid[x][y];
     }
 
     /**
-     * Resets the temporary value to its static value (i.e. removes the preview)
+     * Get the value displayed at the given x and y index, including any preview
      *
      * @param x column
      * @param y row
+     * @return the displayed value
      */
-    public void resetTempValue(int x, int y) {
-        grid[x][y].set(staticGrid[x][y]);
+    public int getDisplayed(int x, int y) {
+        return displayed[x][y];
     }
 
     /**
-     * Resets all temporary values to their static values (i.e. removes all previews/ghost pieces)
+     * Update the value at the given x and y index within the grid.
+     *
+     * @param x     column
+     * @param y     row
+     * @param value the new value
      */
-    public void resetAllTempValues() {
-        logger.debug("Resetting all temporary values");
-
-        for (var x = 0; x < cols; x++) {
-            for (var y = 0; y < rows; y++) {
-                resetTempValue(x, y);
-            }
-        }
+    @Override
+    public void set(int x, int y, int value) {
+        super.set(x, y, value);
+        display(x, y, value);
     }
 
     /**
-     * Resets all values to 0 (empty)
+     * Resets all values to 0 (empty), as a single batch
      */
+    @Override
     public void reset() {
-        for (var x = 0; x < cols; x++) {
-            for (var y = 0; y < rows; y++) {
-                set(x, y, 0);
-            }
-        }
+        beginUpdate();
+        super.reset();
+        commitUpdate();
     }
 
     /**
-     * Get the number of columns in this game
+     * Empty every block in the given lines, as a single batch
      *
-     * @return number of columns
+     * @param cleared the lines to empty
      */
-    public int getCols() {
-        return cols;
+    @Override
+    public void clearLines(ClearedLines cleared) {
+        beginUpdate();
+        super.clearLines(cleared);
+        commitUpdate();
     }
 
     /**
-     * Get the number of rows in this game
+     * Plays the given {@link GamePiece} at the specified position, as a single batch
      *
-     * @return number of rows
+     * @param piece the piece to play
+     * @param x     the x position
+     * @param y     the y position
      */
-    public int getRows() {
-        return rows;
+    @Override
+    public void playPiece(GamePiece piece, int x, int y) {
+        beginUpdate();
+        super.playPiece(piece, x, y);
+        commitUpdate();
     }
 
     /**
-     * Checks if the given {@link GamePiece} can be played at the specified position
+     * Temporarily update the displayed value at the given x and y index within the grid. This can
+     * be reverted by calling {@link #resetAllTempValues()}
      *
-     * @param piece the piece to check
-     * @param x     the x position
-     * @param y     the y position
-     * @return {@code true} if the piece can be played at the specified position, {@code false}
-     * otherwise
+     * @param x     column
+     * @param y     row
+     * @param value the new value
      */
-    public boolean canPlayPiece(GamePiece piece, int x, int y) {
-        x--;
-        y--; // offset to start from center of piece
-        for (var cx = 0; cx < piece.getBlocks().length; cx++) {
-            for (var cy = 0; cy < piece.getBlocks()[0].length; cy++) {
-                if (piece.getBlocks()[cx][cy] != 0 && get(x + cx, y + cy) != 0) {
-                    return false;
-                }
-            }
+    public void setPreview(int x, int y, int value) {
+        if (value == -1) {
+            display(x, y, -get(x, y) - 1);
+            return;
         }
-        return true;
+
+        display(x, y, value + 100);
     }
 
     /**
-     * Plays the given {@link GamePiece} at the specified position, relative to the center of the
-     * piece. This method does not check if the piece can be played at the specified position, which
-     * can be done with {@link Grid#canPlayPiece}
+     * Resets the temporary value to its static value (i.e. removes the preview)
      *
-     * @param piece the piece to play
-     * @param x     the x position
-     * @param y     the y position
-     * @see Grid#canPlayPiece
+     * @param x column
+     * @param y row
      */
-    public void playPiece(GamePiece piece, int x, int y) {
+    public void resetTempValue(int x, int y) {
+        display(x, y, get(x, y));
+    }
 
-        x--;
-        y--; // offset to start from center of piece
+    /**
+     * Resets all temporary values to their static values (i.e. removes all previews/ghost pieces)
+     */
+    public void resetAllTempValues() {
+        logger.debug("Resetting all temporary values");
 
-        for (var cx = 0; cx < piece.getBlocks().length; cx++) {
-            for (var cy = 0; cy < piece.getBlocks()[0].length; cy++) {
-                if (piece.getBlocks()[cx][cy] != 0) {
-                    set(x + cx, y + cy, piece.getValue());
-                }
+        beginUpdate();
+        for (var x = 0; x < getCols(); x++) {
+            for (var y = 0; y < getRows(); y++) {
+                resetTempValue(x, y);
             }
         }
+        commitUpdate();
+        preview.clear();
     }
 
     /**
-     * Creates a temporary ghost piece to show where the next piece will be placed
+     * Removes the preview shown by {@link #previewPiece}, only touching the blocks it covered
+     */
+    public void clearPreview() {
+        beginUpdate();
+        for (var i = 0; i < preview.size; i++) {
+            resetTempValue(preview.x[i], preview.y[i]);
+        }
+        commitUpdate();
+        preview.clear();
+    }
+
+    /**
+     * Creates a temporary ghost piece to show where the next piece will be placed, replacing any
+     * preview already shown. Only the blocks that differ between the old and new preview are
+     * updated.
      *
      * @param piece the {@link GamePiece} to preview
      * @param x     the x position
      * @param y     the y position
      * @param valid whether the placement is valid or not. If false, the piece will be displayed in
      *              red
-     * @see Grid#resetAllTempValues
+     * @see Grid#clearPreview
      */
     public void previewPiece(GamePiece piece, int x, int y, boolean valid) {
+        var shape = piece.getShape();
 
-        x--;
-        y--; // offset to start from center of piece
+        x -= shape.getPivotX();
+        y -= shape.getPivotY(); // offset to start from center of piece
 
-        int value = valid ? piece.getValue() : -1;
-        for (var cx = 0; cx < piece.getBlocks().length; cx++) {
-            for (var cy = 0; cy < piece.getBlocks()[0].length; cy++) {
-                if (piece.getBlocks()[cx][cy] != 0 && inBounds(x + cx, y + cy)) {
-                    setPreview(x + cx, y + cy, value);
-                }
+        nextPreview.clear();
+        for (var i = 0; i < shape.getCellCount(); i++) {
+            var cx = x + shape.getCellX(i);
+            var cy = y + shape.getCellY(i);
+            if (inBounds(cx, cy)) {
+                nextPreview.add(cx, cy);
+            }
+        }
+
+        beginUpdate();
+
+        // Restore the blocks that are no longer covered
+        for (var i = 0; i < preview.size; i++) {
+            if (!nextPreview.contains(preview.x[i], preview.y[i])) {
+                resetTempValue(preview.x[i], preview.y[i]);
             }
         }
+
+        // Writing the value a block already displays does nothing, so blocks that were already
+        // showing this preview are not repainted
+        int value = valid ? shape.getValue() : -1;
+        for (var i = 0; i < nextPreview.size; i++) {
+            setPreview(nextPreview.x[i], nextPreview.y[i], value);
+        }
+
+        commitUpdate();
+
+        preview.copyFrom(nextPreview);
     }
 
     /**
-     * Returns a string representation of the board, formatted as follows:
-     * <p>
-     * BOARD [value at (0, 0)] [value at (0, 1)] ... [value at (0, n)] [value at (1, 0)] ... [value
-     * at (m, n)]
-     * </p>
-     *
-     * @return the resulting string
+     * The positions of the blocks covered by a preview
      */
-    public String toString() {
-        var sb = new StringBuilder("BOARD");
-        for (var x = 0; x < rows; x++) {
-            for (var y = 0; y < cols; y++) {
-                sb.append(" ").append(get(x, y));
+    private static class PreviewFootprint {
+
+        private int[] x = new int[9];
+        private int[] y = new int[9];
+        private int size = 0;
+
+        /**
+         * Remove every position
+         */
+        void clear() {
+            size = 0;
+        }
+
+        /**
+         * Add a position
+         *
+         * @param px column
+         * @param py row
+         */
+        void add(int px, int py) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, size * 2);
+                y = Arrays.copyOf(y, size * 2);
             }
+            x[size] = px;
+            y[size] = py;
+            size++;
         }
 
-        return sb.toString();
+        /**
+         * Check if a position is in this footprint
+         *
+         * @param px column
+         * @param py row
+         * @return {@code true} if the position is covered
+         */
+        boolean contains(int px, int py) {
+            for (var i = 0; i < size; i++) {
+                if (x[i] == px && y[i] == py) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Replace the contents of this footprint with another
+         *
+         * @param other the footprint to copy
+         */
+        void copyFrom(PreviewFootprint other) {
+            if (x.length < other.size) {
+                x = new int[other.x.length];
+                y = new int[other.y.length];
+            }
+            System.arraycopy(other.x, 0, x, 0, other.size);
+            System.arraycopy(other.y, 0, y, 0, other.size);
+            size = other.size;
+        }
     }
-}
\ No newline at end of file
+}
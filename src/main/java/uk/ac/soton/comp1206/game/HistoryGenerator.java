@@ -0,0 +1,118 @@
+package uk.ac.soton.comp1206.game;
+
+import uk.ac.soton.comp1206.utils.SeededRandom;
+
+/**
+ * Deals random pieces, rerolling pieces that were dealt recently. Each piece is chosen at random up
+ * to a set number of times, stopping as soon as it is not one of the last few pieces dealt; so
+ * repeats are rare without the order being as predictable as a bag.
+ */
+public class HistoryGenerator extends QueuedPieceGenerator {
+
+    private final SeededRandom random;
+    private final int rolls;
+
+    /**
+     * The most recent pieces, as a ring buffer, or -1 where no piece has been dealt yet
+     */
+    private final int[] history;
+
+    /**
+     * The position of the oldest piece in {@link #history}
+     */
+    private int oldest = 0;
+
+    /**
+     * Create a generator that remembers the last 4 pieces and rolls up to 4 times
+     *
+     * @param random the random number generator
+     */
+    public HistoryGenerator(SeededRandom random) {
+        this(random, 4, 4);
+    }
+
+    /**
+     * Create a generator
+     *
+     * @param random      the random number generator
+     * @param historySize the number of recent pieces to avoid
+     * @param rolls       the number of times to try for a piece that is not recent
+     */
+    public HistoryGenerator(SeededRandom random, int historySize, int rolls) {
+        if (historySize <= 0 || rolls <= 0) {
+            throw new IllegalArgumentException("History size and rolls must be positive");
+        }
+        this.random = random;
+        this.rolls = rolls;
+        this.history = new int[historySize];
+        clearHistory();
+    }
+
+    /**
+     * Choose a piece and add it to the queue and the history
+     */
+    @Override
+    protected void generate() {
+        var piece = random.nextInt(PieceShape.pieceCount());
+        for (int roll = 1; roll < rolls && isRecent(piece); roll++) {
+            piece = random.nextInt(PieceShape.pieceCount());
+        }
+
+        history[oldest] = piece;
+        oldest = (oldest + 1) % history.length;
+        push(piece);
+    }
+
+    /**
+     * Checks if a piece is in the history
+     *
+     * @param piece the piece index
+     * @return {@code true} if the piece was dealt recently
+     */
+    private boolean isRecent(int piece) {
+        for (var recent : history) {
+            if (recent == piece) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Empty the history
+     */
+    private void clearHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] = -1;
+        }
+        oldest = 0;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        clearHistory();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br> The history follows the queue, oldest first.
+     */
+    @Override
+    public int[] saveState() {
+        var recent = new int[history.length];
+        for (int i = 0; i < history.length; i++) {
+            recent[i] = history[(oldest + i) % history.length];
+        }
+        return append(super.saveState(), recent);
+    }
+
+    @Override
+    public void restoreState(int[] state) {
+        var used = restoreQueue(state);
+        for (int i = 0; i < history.length; i++) {
+            history[i] = state[used + i];
+        }
+        oldest = 0;
+    }
+}
@@ -0,0 +1,151 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A possible move found by a {@link MoveSearch}: a piece in a given rotation, placed with its centre
+ * at a given position, optionally after swapping the current and next pieces.
+ */
+public class Move implements Comparable<Move> {
+
+    private final PieceShape shape;
+    private final int x;
+    private final int y;
+    private final boolean swap;
+    private final int linesCleared;
+    private final int points;
+    private final double evaluation;
+    private final boolean lookahead;
+
+    /**
+     * Create a new move
+     *
+     * @param shape        the piece and rotation to place
+     * @param x            the column to place the centre of the piece at
+     * @param y            the row to place the centre of the piece at
+     * @param swap         whether the current and next pieces are swapped first
+     * @param linesCleared the number of lines the placement clears
+     * @param points       the points the placement scores
+     * @param evaluation   how good the move is; higher is better
+     * @param lookahead    whether the evaluation includes the best follow-up move
+     */
+    Move(PieceShape shape, int x, int y, boolean swap, int linesCleared, int points,
+            double evaluation, boolean lookahead) {
+        this.shape = shape;
+        this.x = x;
+        this.y = y;
+        this.swap = swap;
+        this.linesCleared = linesCleared;
+        this.points = points;
+        this.evaluation = evaluation;
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Get the piece and rotation to place
+     *
+     * @return the shape
+     */
+    public PieceShape getShape() {
+        return shape;
+    }
+
+    /**
+     * Get the column to place the centre of the piece at
+     *
+     * @return the x position
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row to place the centre of the piece at
+     *
+     * @return the y position
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Whether the current and next pieces have to be swapped before placing
+     *
+     * @return {@code true} if this move places the next piece
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Get the number of lines this placement clears
+     *
+     * @return the number of lines
+     */
+    public int getLinesCleared() {
+        return linesCleared;
+    }
+
+    /**
+     * Get the points this placement scores
+     *
+     * @return the points
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    /**
+     * Get how good this move is. Only moves with the same {@link #hasLookahead()} can be compared
+     * fairly.
+     *
+     * @return the evaluation; higher is better
+     */
+    public double getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * Whether the evaluation includes the best move for the following piece
+     *
+     * @return {@code true} if the move was searched two pieces deep
+     */
+    public boolean hasLookahead() {
+        return lookahead;
+    }
+
+    /**
+     * Copy this move with a new evaluation that includes the follow-up move
+     *
+     * @param evaluation the combined evaluation
+     * @return the new move
+     */
+    Move withLookahead(double evaluation) {
+        return new Move(shape, x, y, swap, linesCleared, points, evaluation, true);
+    }
+
+    /**
+     * Orders moves from best to worst. Moves with lookahead come before moves without, since their
+     * evaluations are not comparable. This is only a fair ranking when the moves with lookahead
+     * were the best moves without it, as {@link MoveSearch} ensures.
+     *
+     * @param other the move to compare to
+     * @return the comparison result
+     */
+    @Override
+    public int compareTo(Move other) {
+        if (lookahead != other.lookahead) {
+            return lookahead ? -1 : 1;
+        }
+        return Double.compare(other.evaluation, evaluation);
+    }
+
+    /**
+     * Return a string representation of the move
+     *
+     * @return the move
+     */
+    @Override
+    public String toString() {
+        return (swap ? "swap, " : "") + shape.getName() + " rotation " + shape.getRotation()
+                + " at (" + x + ", " + y + "): " + evaluation;
+    }
+}
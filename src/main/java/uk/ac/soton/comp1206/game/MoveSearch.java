@@ -0,0 +1,483 @@
+package uk.ac.soton.comp1206.game;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Searches for good moves, for hints and autoplay.
+ * <p>
+ * Every placement of the current piece, and of the next piece after a swap, is tried in every
+ * rotation on a copy of the board's occupancy, so the live board is never touched. Each placement is
+ * evaluated by the points it scores and the holes (empty blocks with no empty neighbour) it leaves.
+ * If there is time left, the best placements are then searched one piece deeper, in order from
+ * best to worst, adding the best follow-up move for the other piece.
+ * <p>
+ * The work is spread across a {@link ForkJoinPool} and stops when the latency budget runs out;
+ * whatever has been evaluated by then is returned. The placements searched one piece deeper are
+ * always the best ones from the first pass, so they are ranked first and the rest keep their order.
+ */
+public class MoveSearch {
+
+    private static final Logger logger = LogManager.getLogger(MoveSearch.class);
+
+    /**
+     * The latency budget used if none is given
+     */
+    public static final Duration DEFAULT_BUDGET = Duration.ofMillis(5);
+
+    /**
+     * How many points each hole is worth. Holes can only be filled by clearing a line through them.
+     */
+    private static final double HOLE_PENALTY = 20;
+
+    /**
+     * The evaluation of a follow-up piece that does not fit anywhere
+     */
+    private static final double NO_MOVE_PENALTY = 1000;
+
+    /**
+     * The number of candidates below which a task is not split any further
+     */
+    private static final int SPLIT_THRESHOLD = 8;
+
+    /**
+     * The gap between the columns tried in each pass over the board, so that if the budget runs out
+     * while listing placements, those listed are spread across the board
+     */
+    private static final int COLUMN_STRIDE = 4;
+
+    private final ForkJoinPool pool;
+    private final long budgetNanos;
+
+    /**
+     * Create a search using the common pool and the default budget
+     */
+    public MoveSearch() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUDGET);
+    }
+
+    /**
+     * Create a search
+     *
+     * @param pool   the pool to evaluate moves on
+     * @param budget how long a search may take
+     */
+    public MoveSearch(ForkJoinPool pool, Duration budget) {
+        this.pool = pool;
+        this.budgetNanos = budget.toNanos();
+    }
+
+    /**
+     * Find the best moves in the engine's current position
+     *
+     * @param engine the game to search
+     * @return the moves found, best first
+     */
+    public List<Move> search(GameEngine engine) {
+        return search(engine.getBoard(), engine.getCurrentPiece(), engine.getNextPiece(),
+                engine.getMultiplier());
+    }
+
+    /**
+     * Find the best moves for the given pieces on a board
+     *
+     * @param board      the board to play on; only its occupancy is read, before this returns
+     * @param current    the piece being placed, or {@code null} if there is none
+     * @param next       the next piece, which can be swapped in, or {@code null}
+     * @param multiplier the current score multiplier
+     * @return the moves found, best first; empty if there is no current piece
+     */
+    public List<Move> search(Board board, GamePiece current, GamePiece next, int multiplier) {
+        if (current == null) {
+            return new ArrayList<>();
+        }
+
+        var deadline = System.nanoTime() + budgetNanos;
+        var root = board.getOccupancy().copy();
+
+        var swapShape = next != null && next.getShape().getPiece() != current.getShape().getPiece()
+                ? next.getShape() : null;
+        var candidates = new Candidates();
+        for (int pass = 0; pass < COLUMN_STRIDE; pass++) {
+            candidates.addPass(root, current.getShape(), false, pass, deadline);
+            if (swapShape != null) {
+                candidates.addPass(root, swapShape, true, pass, deadline);
+            }
+        }
+
+        var moves = new Move[candidates.size];
+        pool.invoke(new Evaluate(root, candidates, multiplier, moves, 0, candidates.size,
+                deadline));
+
+        // Keep whatever was evaluated in time, best first
+        var found = new ArrayList<Move>(moves.length);
+        for (var move : moves) {
+            if (move != null) {
+                found.add(move);
+            }
+        }
+        found.sort(null);
+
+        if (next != null && System.nanoTime() < deadline) {
+            var ranked = found.toArray(Move[]::new);
+            var refined = new Move[ranked.length];
+            var claimed = new AtomicInteger();
+            var workers = new ArrayList<Lookahead>();
+            for (int i = 0; i < Math.min(pool.getParallelism(), ranked.length); i++) {
+                workers.add(new Lookahead(root, ranked, current.getShape(), next.getShape(),
+                        multiplier, refined, claimed, deadline));
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(workers);
+                }
+            });
+
+            // Only use the unbroken run of best moves that were refined, so a move without
+            // lookahead is never ranked below a worse one that has it
+            int count = 0;
+            while (count < refined.length && refined[count] != null) {
+                found.set(count, refined[count]);
+                count++;
+            }
+            found.subList(0, count).sort(null);
+        }
+
+        logger.debug("Found {} of {} moves in {}us", found.size(), candidates.size,
+                (System.nanoTime() - deadline + budgetNanos) / 1000);
+
+        return found;
+    }
+
+    /**
+     * Play a shape on a bitboard, clear any full lines and evaluate the result
+     *
+     * @param board      the bitboard to play on, which is modified
+     * @param shape      the shape to play
+     * @param x          the column of the centre of the shape
+     * @param y          the row of the centre of the shape
+     * @param swap       whether this placement needs a swap
+     * @param multiplier the score multiplier
+     * @return the evaluated move
+     */
+    private static Move play(Bitboard board, PieceShape shape, int x, int y, boolean swap,
+            int multiplier) {
+        var cols = board.getCols();
+        var rows = board.getRows();
+        var left = x - shape.getPivotX();
+        var top = y - shape.getPivotY();
+
+        for (int i = 0; i < shape.getCellCount(); i++) {
+            board.set(left + shape.getCellX(i), top + shape.getCellY(i), true);
+        }
+
+        // Only the lines the shape covers can have been filled by it
+        var minRow = top + shape.getMinY();
+        var maxRow = top + shape.getMaxY();
+        var minColumn = left + shape.getMinX();
+        var maxColumn = left + shape.getMaxX();
+
+        int fullRows = 0;
+        int fullColumns = 0;
+        long rowBits = 0;
+        long columnBits = 0;
+        for (int row = minRow; row <= maxRow; row++) {
+            if (board.isRowFull(row)) {
+                fullRows++;
+                rowBits |= 1L << (row - minRow);
+            }
+        }
+        for (int column = minColumn; column <= maxColumn; column++) {
+            if (board.isColumnFull(column)) {
+                fullColumns++;
+                columnBits |= 1L << (column - minColumn);
+            }
+        }
+
+        for (int row = minRow; row <= maxRow; row++) {
+            if ((rowBits >>> (row - minRow) & 1L) != 0) {
+                for (int column = 0; column < cols; column++) {
+                    board.set(column, row, false);
+                }
+            }
+        }
+        for (int column = minColumn; column <= maxColumn; column++) {
+            if ((columnBits >>> (column - minColumn) & 1L) != 0) {
+                for (int row = 0; row < rows; row++) {
+                    board.set(column, row, false);
+                }
+            }
+        }
+
+        var lines = fullRows + fullColumns;
+        var blocks = fullRows * cols + fullColumns * rows - fullRows * fullColumns;
+        var points = lines * blocks * 10 * multiplier;
+
+        return new Move(shape, x, y, swap, lines, points,
+                points - HOLE_PENALTY * countHoles(board), false);
+    }
+
+    /**
+     * Count the empty blocks whose neighbours are all filled or off the board
+     *
+     * @param board the bitboard
+     * @return the number of holes
+     */
+    private static int countHoles(Bitboard board) {
+        var cols = board.getCols();
+        var rows = board.getRows();
+        int holes = 0;
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < cols; x++) {
+                if (!board.get(x, y)
+                        && (x == 0 || board.get(x - 1, y))
+                        && (x == cols - 1 || board.get(x + 1, y))
+                        && (y == 0 || board.get(x, y - 1))
+                        && (y == rows - 1 || board.get(x, y + 1))) {
+                    holes++;
+                }
+            }
+        }
+        return holes;
+    }
+
+    /**
+     * The evaluation of the best placement of a piece, in any rotation
+     *
+     * @param board      the board to play on, which is not modified
+     * @param scratch    a bitboard of the same size to play on
+     * @param shape      the piece to place
+     * @param multiplier the score multiplier
+     * @param deadline   when to give up, from {@link System#nanoTime()}
+     * @return the best evaluation, or {@code NaN} if the deadline passed
+     */
+    private static double bestPlacement(Bitboard board, Bitboard scratch, PieceShape shape,
+            int multiplier, long deadline) {
+        var candidates = new Candidates();
+        candidates.addAll(board, shape, false, deadline);
+        if (System.nanoTime() > deadline) {
+            return Double.NaN;
+        }
+
+        double best = -NO_MOVE_PENALTY;
+        for (int i = 0; i < candidates.size; i++) {
+            if (System.nanoTime() > deadline) {
+                return Double.NaN;
+            }
+            scratch.copyFrom(board);
+            var move = play(scratch, PieceShape.byId(candidates.shapes[i]), candidates.xs[i],
+                    candidates.ys[i], false, multiplier);
+            best = Math.max(best, move.getEvaluation());
+        }
+        return best;
+    }
+
+    /**
+     * The legal placements to evaluate
+     */
+    private static class Candidates {
+
+        private int[] shapes = new int[64];
+        private int[] xs = new int[64];
+        private int[] ys = new int[64];
+        private boolean[] swaps = new boolean[64];
+        private int size = 0;
+
+        /**
+         * Add every legal placement of a piece, in each distinct rotation
+         *
+         * @param board    the board to place on
+         * @param shape    the piece
+         * @param swap     whether placing this piece needs a swap
+         * @param deadline when to stop adding placements, from {@link System#nanoTime()}
+         */
+        void addAll(Bitboard board, PieceShape shape, boolean swap, long deadline) {
+            for (int pass = 0; pass < COLUMN_STRIDE; pass++) {
+                addPass(board, shape, swap, pass, deadline);
+            }
+        }
+
+        /**
+         * Add the legal placements of a piece in every {@link #COLUMN_STRIDE}th column, in each
+         * distinct rotation
+         *
+         * @param board    the board to place on
+         * @param shape    the piece
+         * @param swap     whether placing this piece needs a swap
+         * @param pass     which of the columns to try, from 0 to {@link #COLUMN_STRIDE} - 1
+         * @param deadline when to stop adding placements, from {@link System#nanoTime()}
+         */
+        void addPass(Bitboard board, PieceShape shape, boolean swap, int pass, long deadline) {
+            for (int r = 0; r < PieceShape.ROTATIONS; r++) {
+                var rotated = shape.rotated(r);
+                if (isRepeat(shape, r)) {
+                    continue;
+                }
+
+                var pivotX = rotated.getPivotX();
+                var pivotY = rotated.getPivotY();
+                // Only centres on the board can be clicked, even when the blocks are to one side
+                for (int x = Math.max(pivotX - rotated.getMinX(), 0) + pass;
+                        x < Math.min(board.getCols() + pivotX - rotated.getMaxX(), board.getCols());
+                        x += COLUMN_STRIDE) {
+                    // Large boards have too many placements to list them all in time
+                    if (System.nanoTime() > deadline) {
+                        return;
+                    }
+                    for (int y = Math.max(pivotY - rotated.getMinY(), 0);
+                            y < Math.min(board.getRows() + pivotY - rotated.getMaxY(),
+                                    board.getRows()); y++) {
+                        if (board.fits(rotated, x - pivotX, y - pivotY)) {
+                            add(rotated.getId(), x, y, swap);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Checks if a rotation of a shape looks the same as an earlier one, so its placements have
+         * already been added
+         *
+         * @param shape     the shape
+         * @param rotations the rotation to check
+         * @return {@code true} if an earlier rotation is identical
+         */
+        private static boolean isRepeat(PieceShape shape, int rotations) {
+            var masks = shape.rotated(rotations).getRowMasks();
+            for (int r = 0; r < rotations; r++) {
+                if (Arrays.equals(masks, shape.rotated(r).getRowMasks())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add a placement
+         *
+         * @param shape the shape id
+         * @param x     the column of the centre
+         * @param y     the row of the centre
+         * @param swap  whether a swap is needed
+         */
+        private void add(int shape, int x, int y, boolean swap) {
+            if (size == shapes.length) {
+                shapes = Arrays.copyOf(shapes, size * 2);
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+                swaps = Arrays.copyOf(swaps, size * 2);
+            }
+            shapes[size] = shape;
+            xs[size] = x;
+            ys[size] = y;
+            swaps[size] = swap;
+            size++;
+        }
+    }
+
+    /**
+     * Evaluates a range of candidates, one piece deep
+     */
+    private static class Evaluate extends RecursiveAction {
+
+        private final Bitboard root;
+        private final Candidates candidates;
+        private final int multiplier;
+        private final Move[] results;
+        private final int from;
+        private final int to;
+        private final long deadline;
+
+        Evaluate(Bitboard root, Candidates candidates, int multiplier, Move[] results, int from,
+                int to, long deadline) {
+            this.root = root;
+            this.candidates = candidates;
+            this.multiplier = multiplier;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                var middle = (from + to) >>> 1;
+                invokeAll(
+                        new Evaluate(root, candidates, multiplier, results, from, middle, deadline),
+                        new Evaluate(root, candidates, multiplier, results, middle, to, deadline));
+                return;
+            }
+
+            var scratch = root.copy();
+            for (int i = from; i < to && System.nanoTime() < deadline; i++) {
+                scratch.copyFrom(root);
+                results[i] = play(scratch, PieceShape.byId(candidates.shapes[i]), candidates.xs[i],
+                        candidates.ys[i], candidates.swaps[i], multiplier);
+            }
+        }
+    }
+
+    /**
+     * Adds the best follow-up move to the evaluation of moves, taking them one at a time from best
+     * to worst until they run out or the deadline passes. Several run at once, sharing the count of
+     * moves taken, so the moves refined are always the best ones.
+     */
+    private static class Lookahead extends RecursiveAction {
+
+        private final Bitboard root;
+        private final Move[] moves;
+        private final PieceShape current;
+        private final PieceShape next;
+        private final int multiplier;
+        private final Move[] results;
+        private final AtomicInteger claimed;
+        private final long deadline;
+
+        Lookahead(Bitboard root, Move[] moves, PieceShape current, PieceShape next, int multiplier,
+                Move[] results, AtomicInteger claimed, long deadline) {
+            this.root = root;
+            this.moves = moves;
+            this.current = current;
+            this.next = next;
+            this.multiplier = multiplier;
+            this.results = results;
+            this.claimed = claimed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            var board = root.copy();
+            var scratch = root.copy();
+            while (System.nanoTime() < deadline) {
+                var index = claimed.getAndIncrement();
+                if (index >= moves.length) {
+                    return;
+                }
+
+                var move = moves[index];
+                board.copyFrom(root);
+                var replayed = play(board, move.getShape(), move.getX(), move.getY(),
+                        move.isSwap(), multiplier);
+
+                // After a swap, the old current piece comes next
+                var following = move.isSwap() ? current : next;
+                var nextMultiplier = move.getLinesCleared() > 0 ? multiplier + 1 : 1;
+                var best = bestPlacement(board, scratch, following, nextMultiplier, deadline);
+                if (!Double.isNaN(best)) {
+                    results[index] = move.withLookahead(replayed.getPoints() + best);
+                }
+            }
+        }
+    }
+}
@@ -20,9 +20,15 @@ public class MultiplayerGame extends Game {
     private final Communicator communicator;
 
     /**
-     * The queue containing the next pieces received from the server
+     * The queue containing the numbers of the next pieces received from the server
      */
-    private final Queue<GamePiece> nextPieces = new ArrayDeque<>();
+    private final Queue<Integer> nextPieces = new ArrayDeque<>();
+
+    /**
+     * The last score and lives sent to the server, so unchanged values are not sent again
+     */
+    private int sentScore = 0;
+    private int sentLives = MAX_LIVES;
 
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
@@ -36,6 +42,7 @@ public class MultiplayerGame extends Game {
         this.communicator = communicator;
         communicator.clearListeners();
         communicator.addListener(this::onCommunication);
+        engine.setPieceSource(this::takePiece);
     }
 
     /**
@@ -56,8 +63,7 @@ public class MultiplayerGame extends Game {
 
         switch (type) {
             case "PIECE" -> {
-                var piece = GamePiece.createPiece(Integer.parseInt(message));
-                nextPieces.add(piece);
+                nextPieces.add(Integer.parseInt(message));
                 notifyAll();
             }
             case "ERROR" -> logger.error("Received error from server: " + Colour.error(message));
@@ -66,30 +72,22 @@ public class MultiplayerGame extends Game {
 
     /**
      * {@inheritDoc}
-     */
-    @Override
-    public void loseLife() {
-        super.loseLife();
-        if (lives.get() >= 0) {
-            communicator.send("LIVES " + lives.get());
-        }
-    }
-
-    /**
-     * {@inheritDoc}
+     * <br> Also sends the DIE message to the server.
      */
     @Override
     public void stop() {
+        // Queued, not waited for: the writer thread sends it, and the connection outlives the game
         communicator.send("DIE");
         super.stop();
     }
 
     /**
-     * Get the next piece from the queue.<br> If the queue is shorter than the target size, request
-     * more pieces from the server.
+     * Take the next piece from the queue of pieces received from the server.<br> If the queue is
+     * shorter than the target size, request more pieces from the server.
+     *
+     * @return the next piece
      */
-    @Override
-    public synchronized void nextPiece() {
+    private synchronized GamePiece takePiece() {
         // Request pieces up to the target queue size
         for (int i = nextPieces.size(); i < TARGET_QUEUE_SIZE; i++) {
             communicator.send("PIECE");
@@ -105,34 +103,37 @@ public class MultiplayerGame extends Game {
             }
         }
 
-        // Get the next piece
-        currentPiece = nextPiece;
-        nextPiece = nextPieces.remove();
-
-        if (currentPiece == null) {
-            nextPiece();
-        }
-
-        refreshPreview();
+        return GamePiece.createPiece(nextPieces.remove());
     }
 
     /**
-     * After a piece has been placed, checks for any cleared rows or columns and updates the score.
-     * <br> Also sends the current grid state to the server.
+     * {@inheritDoc}
+     * <br> Also sends the current grid state to the server after a piece is placed.
      */
     @Override
-    void afterPiece() {
-        super.afterPiece();
-        communicator.send(grid.toString());
+    protected void onPlacement(GamePiece piece, int x, int y, boolean placed) {
+        super.onPlacement(piece, x, y, placed);
+        if (placed) {
+            communicator.send(grid.toString());
+        }
     }
 
     /**
      * {@inheritDoc}
+     * <br> Also sends the score and lives to the server when they change.
      */
     @Override
-    public void score(int linesCleared, int blocksCleared) {
-        super.score(linesCleared, blocksCleared);
-        communicator.send("SCORE " + this.score.get());
+    protected void onStatsChanged(int score, int level, int multiplier, int lives) {
+        super.onStatsChanged(score, level, multiplier, lives);
+
+        if (score != sentScore) {
+            sentScore = score;
+            communicator.send("SCORE " + score);
+        }
+        if (lives != sentLives && lives >= 0) {
+            sentLives = lives;
+            communicator.send("LIVES " + lives);
+        }
     }
 
-}
\ No newline at end of file
+}
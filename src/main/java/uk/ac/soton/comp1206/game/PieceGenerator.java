@@ -0,0 +1,46 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * Decides the order pieces are dealt in. Pieces are identified by their index, from 0 to
+ * {@link PieceShape#pieceCount()} - 1.
+ *
+ * @see BagGenerator
+ * @see HistoryGenerator
+ */
+public interface PieceGenerator {
+
+    /**
+     * Take the next piece
+     *
+     * @return the piece index
+     */
+    int next();
+
+    /**
+     * Look at an upcoming piece without taking it
+     *
+     * @param ahead how far ahead to look; 0 is the piece {@link #next()} will return
+     * @return the piece index
+     */
+    int peek(int ahead);
+
+    /**
+     * Forget every upcoming piece and any history, as if no pieces had been dealt
+     */
+    void reset();
+
+    /**
+     * Get the state of the generator, apart from its random number generator, so that it can be
+     * restored later
+     *
+     * @return the state
+     */
+    int[] saveState();
+
+    /**
+     * Restore a state returned by {@link #saveState()}
+     *
+     * @param state the state
+     */
+    void restoreState(int[] state);
+}
@@ -0,0 +1,560 @@
+package uk.ac.soton.comp1206.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * An immutable shape of a piece in one particular rotation.
+ * <p>
+ * The pieces are defined in the {@code /misc/pieces.txt} resource. Every shape of every piece is
+ * created once, the first time a shape is needed, and shared between all {@link GamePiece}s. Each
+ * shape stores its blocks in several forms so that the code using it never has to work them out
+ * again: a 2D grid, a list of cells, one bit mask per row and a bounding box. Rotating a piece
+ * just looks up the next shape in the table.
+ */
+public final class PieceShape {
+
+    /**
+     * The number of distinct rotations of each piece
+     */
+    public static final int ROTATIONS = 4;
+
+    /**
+     * The largest width and height of a piece
+     */
+    public static final int MAX_SIZE = 5;
+
+    /**
+     * The highest colour a piece can have, the last index of {@code GameBlock.COLOURS}. Values of
+     * 100 and above are used by the grid for previews, so colours must stay well below that.
+     */
+    public static final int MAX_COLOUR = 16;
+
+    /**
+     * The resource the pieces are defined in
+     */
+    private static final String RESOURCE = "/misc/pieces.txt";
+
+    private static final Logger logger = LogManager.getLogger(PieceShape.class);
+
+    /**
+     * Holds the table of shapes, so the pieces are only loaded when a shape is first needed
+     */
+    private static final class Table {
+
+        /**
+         * Every shape, indexed by piece number then rotation
+         */
+        private static final PieceShape[][] SHAPES = load();
+
+        /**
+         * The width and height of the largest piece
+         */
+        private static final int MAX_PIECE_SIZE = largestSize(SHAPES);
+    }
+
+    /**
+     * The piece number of this shape
+     */
+    private final int piece;
+
+    /**
+     * The number of clockwise rotations from the default orientation, from 0 to 3
+     */
+    private final int rotation;
+
+    /**
+     * The value (colour) of the piece
+     */
+    private final int value;
+
+    /**
+     * The name of the piece
+     */
+    private final String name;
+
+    /**
+     * The 2D grid representation of the shape, indexed by x then y
+     */
+    private final int[][] blocks;
+
+    /**
+     * The x positions of each filled cell in {@link #blocks}
+     */
+    private final int[] cellsX;
+
+    /**
+     * The y positions of each filled cell in {@link #blocks}
+     */
+    private final int[] cellsY;
+
+    /**
+     * The shape as a bit mask for each row: bit x of {@code rowMasks[y]} is set if the cell is
+     * filled
+     */
+    private final int[] rowMasks;
+
+    // The bounding box of the filled cells, inclusive
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    /**
+     * Create a new shape. Only called when building the table.
+     *
+     * @param piece    the piece number
+     * @param rotation the rotation
+     * @param name     the name of the piece
+     * @param value    the value (colour) of the piece
+     * @param blocks   the block makeup, with 0 for empty cells and anything else for filled ones
+     */
+    private PieceShape(int piece, int rotation, String name, int value, int[][] blocks) {
+        this.piece = piece;
+        this.rotation = rotation;
+        this.name = name;
+        this.value = value;
+
+        var size = blocks.length;
+        this.blocks = new int[size][size];
+        this.rowMasks = new int[size];
+
+        int count = 0;
+        int minX = size;
+        int minY = size;
+        int maxX = -1;
+        int maxY = -1;
+
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                if (blocks[x][y] == 0) {
+                    continue;
+                }
+                this.blocks[x][y] = value;
+                rowMasks[y] |= 1 << x;
+                count++;
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+            }
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+
+        cellsX = new int[count];
+        cellsY = new int[count];
+        int i = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (this.blocks[x][y] != 0) {
+                    cellsX[i] = x;
+                    cellsY[i] = y;
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the pieces from {@link #RESOURCE} and build every rotation of each
+     *
+     * @return the table of shapes
+     */
+    private static PieceShape[][] load() {
+        var in = PieceShape.class.getResourceAsStream(RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException("Missing piece definitions: " + RESOURCE);
+        }
+
+        List<PieceShape[]> pieces = new ArrayList<>();
+        try (var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String name = null;
+            int value = 0;
+            List<String> rows = new ArrayList<>();
+            int lineNumber = 0;
+            String line;
+            while (true) {
+                line = reader.readLine();
+                lineNumber++;
+                var trimmed = line == null ? "" : line.strip();
+
+                // A blank line, a new piece or the end of the file finishes the current piece
+                if (trimmed.isEmpty() || trimmed.startsWith("[")) {
+                    if (name != null) {
+                        pieces.add(build(pieces.size(), name, value, rows, lineNumber));
+                        name = null;
+                        rows.clear();
+                    }
+                }
+                if (line == null) {
+                    break;
+                }
+
+                // Rows of a shape are only made of blocks and empty cells, so a comment can't be
+                // mistaken for one
+                if (name != null && trimmed.matches("[#.]+")) {
+                    rows.add(trimmed);
+                } else if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                } else if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                    name = trimmed.substring(1, trimmed.length() - 1).strip();
+                    value = 0;
+                } else if (name == null) {
+                    throw invalid(lineNumber, "Expected a piece name in square brackets");
+                } else if (trimmed.startsWith("colour ")) {
+                    try {
+                        value = Integer.parseInt(trimmed.substring("colour ".length()).strip());
+                    } catch (NumberFormatException e) {
+                        throw invalid(lineNumber, "Invalid colour");
+                    }
+                } else {
+                    throw invalid(lineNumber, "Unexpected line in " + name);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read piece definitions", e);
+        }
+
+        if (pieces.isEmpty()) {
+            throw new IllegalStateException("No pieces defined in " + RESOURCE);
+        }
+
+        logger.info("Loaded {} pieces", pieces.size());
+        return pieces.toArray(PieceShape[][]::new);
+    }
+
+    /**
+     * Build every rotation of a piece from its definition
+     *
+     * @param piece      the piece number
+     * @param name       the name of the piece
+     * @param value      the value (colour) of the piece
+     * @param rows       the rows of the shape, with '#' for blocks and '.' for empty cells
+     * @param lineNumber the line the definition ends on, for error messages
+     * @return the piece's shapes, indexed by rotation
+     */
+    private static PieceShape[] build(int piece, String name, int value, List<String> rows,
+            int lineNumber) {
+        var size = rows.size();
+        if (size == 0 || size > MAX_SIZE || size % 2 == 0) {
+            throw invalid(lineNumber, name + " must have an odd size of at most " + MAX_SIZE);
+        }
+        if (value <= 0 || value > MAX_COLOUR) {
+            throw invalid(lineNumber, name + " must have a colour from 1 to " + MAX_COLOUR);
+        }
+
+        var blocks = new int[size][size];
+        boolean empty = true;
+        for (int y = 0; y < size; y++) {
+            var row = rows.get(y);
+            if (row.length() != size) {
+                throw invalid(lineNumber, name + " must be square");
+            }
+            for (int x = 0; x < size; x++) {
+                switch (row.charAt(x)) {
+                    case '#' -> {
+                        blocks[x][y] = 1;
+                        empty = false;
+                    }
+                    case '.' -> {
+                    }
+                    default -> throw invalid(lineNumber, name + " has an unknown block");
+                }
+            }
+        }
+        if (empty) {
+            throw invalid(lineNumber, name + " has no blocks");
+        }
+
+        var shapes = new PieceShape[ROTATIONS];
+        for (int rotation = 0; rotation < ROTATIONS; rotation++) {
+            shapes[rotation] = new PieceShape(piece, rotation, name, value, blocks);
+            blocks = rotate(blocks);
+        }
+        return shapes;
+    }
+
+    /**
+     * Create the exception for an invalid piece definition
+     *
+     * @param lineNumber the line the problem is on
+     * @param message    what is wrong
+     * @return the exception
+     */
+    private static IllegalStateException invalid(int lineNumber, String message) {
+        return new IllegalStateException(RESOURCE + " line " + lineNumber + ": " + message);
+    }
+
+    /**
+     * Find the width and height of the largest piece
+     *
+     * @param shapes the table of shapes
+     * @return the largest size
+     */
+    private static int largestSize(PieceShape[][] shapes) {
+        int size = 0;
+        for (var piece : shapes) {
+            size = Math.max(size, piece[0].getSize());
+        }
+        return size;
+    }
+
+    /**
+     * Rotate a square grid of blocks once clockwise
+     *
+     * @param blocks the grid to rotate
+     * @return a new, rotated grid
+     */
+    private static int[][] rotate(int[][] blocks) {
+        int[][] rotated = new int[blocks.length][blocks[0].length];
+
+        for (int x = 0; x < blocks.length; x++) {
+            for (int y = 0; y < blocks[x].length; y++) {
+                rotated[blocks.length - 1 - y][x] = blocks[x][y];
+            }
+        }
+
+        return rotated;
+    }
+
+    /**
+     * Get the shape of the given piece in the given rotation
+     *
+     * @param piece    the piece number
+     * @param rotation the number of clockwise rotations (any integer; taken modulo 4)
+     * @return the shape
+     * @throws IndexOutOfBoundsException if there is no such piece
+     */
+    public static PieceShape of(int piece, int rotation) {
+        if (piece < 0 || piece >= Table.SHAPES.length) {
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
+        }
+        return Table.SHAPES[piece][rotation & (ROTATIONS - 1)];
+    }
+
+    /**
+     * Get the number of distinct pieces
+     *
+     * @return the number of pieces
+     */
+    public static int pieceCount() {
+        return Table.SHAPES.length;
+    }
+
+    /**
+     * Get the width and height of the largest piece
+     *
+     * @return the largest size
+     */
+    public static int maxPieceSize() {
+        return Table.MAX_PIECE_SIZE;
+    }
+
+    /**
+     * Get the total number of shapes (every rotation of every piece). Each shape has an
+     * {@link #getId() id} below this number.
+     *
+     * @return the number of shapes
+     */
+    public static int shapeCount() {
+        return Table.SHAPES.length * ROTATIONS;
+    }
+
+    /**
+     * Get the shape with the given id
+     *
+     * @param id the id
+     * @return the shape
+     */
+    public static PieceShape byId(int id) {
+        return of(id / ROTATIONS, id % ROTATIONS);
+    }
+
+    /**
+     * Get this shape rotated clockwise the given number of times
+     *
+     * @param rotations the number of rotations; negative values rotate counter-clockwise
+     * @return the rotated shape
+     */
+    public PieceShape rotated(int rotations) {
+        return Table.SHAPES[piece][(rotation + rotations) & (ROTATIONS - 1)];
+    }
+
+    /**
+     * Get a unique index for this shape, from 0 to {@link #shapeCount()} - 1
+     *
+     * @return the id
+     */
+    public int getId() {
+        return piece * ROTATIONS + rotation;
+    }
+
+    /**
+     * Get the piece number of this shape
+     *
+     * @return piece number
+     */
+    public int getPiece() {
+        return piece;
+    }
+
+    /**
+     * Get the rotation of this shape
+     *
+     * @return the number of clockwise rotations from the default orientation
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the value (colour) of this piece
+     *
+     * @return piece value
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Get the name of this piece
+     *
+     * @return piece name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the width and height of the grid this shape is defined in
+     *
+     * @return the size of the grid
+     */
+    public int getSize() {
+        return blocks.length;
+    }
+
+    /**
+     * Get the x offset of the centre of the shape, i.e. the block that is placed on the position
+     * the player selects
+     *
+     * @return the x offset of the centre
+     */
+    public int getPivotX() {
+        return blocks.length / 2;
+    }
+
+    /**
+     * Get the y offset of the centre of the shape
+     *
+     * @return the y offset of the centre
+     */
+    public int getPivotY() {
+        return blocks.length / 2;
+    }
+
+    /**
+     * Get the block makeup of this shape. The returned array is shared and must not be modified.
+     *
+     * @return 2D grid of the blocks, indexed by x then y
+     */
+    public int[][] getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Get the number of filled cells in this shape
+     *
+     * @return the number of cells
+     */
+    public int getCellCount() {
+        return cellsX.length;
+    }
+
+    /**
+     * Get the x position of a filled cell
+     *
+     * @param i the index of the cell, from 0 to {@link #getCellCount()} - 1
+     * @return the x position within the shape's grid
+     */
+    public int getCellX(int i) {
+        return cellsX[i];
+    }
+
+    /**
+     * Get the y position of a filled cell
+     *
+     * @param i the index of the cell, from 0 to {@link #getCellCount()} - 1
+     * @return the y position within the shape's grid
+     */
+    public int getCellY(int i) {
+        return cellsY[i];
+    }
+
+    /**
+     * Get the shape as one bit mask per row. The returned array is shared and must not be
+     * modified.
+     *
+     * @return the row masks
+     * @see Bitboard#fits
+     */
+    public int[] getRowMasks() {
+        return rowMasks;
+    }
+
+    /**
+     * Get the leftmost filled column of the shape
+     *
+     * @return the minimum x of the bounding box
+     */
+    public int getMinX() {
+        return minX;
+    }
+
+    /**
+     * Get the topmost filled row of the shape
+     *
+     * @return the minimum y of the bounding box
+     */
+    public int getMinY() {
+        return minY;
+    }
+
+    /**
+     * Get the rightmost filled column of the shape
+     *
+     * @return the maximum x of the bounding box
+     */
+    public int getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * Get the bottommost filled row of the shape
+     *
+     * @return the maximum y of the bounding box
+     */
+    public int getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * Return the string representation of this shape
+     *
+     * @return the name of the piece
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,147 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.BitSet;
+
+/**
+ * The legal placements of every piece shape on a {@link Board}.
+ * <p>
+ * For each shape, the map holds a bitmap of the positions its centre can be placed at, indexed by
+ * {@code x * rows + y}. A shape's bitmap is only worked out when it is first asked for after the
+ * board's occupancy has changed; previews and hovers do not change the occupancy, so between
+ * placements every check is a single bit lookup.
+ * <p>
+ * On boards larger than {@link #REBUILD_LIMIT} blocks, rebuilding a whole bitmap costs far more than
+ * checking one placement directly, so {@link #canPlayPiece} only uses bitmaps that are already up to
+ * date and otherwise checks the board itself.
+ */
+public class PlacementMap {
+
+    /**
+     * The largest board, in blocks, for which a single placement check rebuilds a stale bitmap
+     */
+    public static final int REBUILD_LIMIT = 64 * 64;
+
+    /**
+     * The board the placements are for
+     */
+    private final Board board;
+
+    /**
+     * The legal centre positions of each shape, indexed by {@link PieceShape#getId()}
+     */
+    private final BitSet[] legal;
+
+    /**
+     * The board version each bitmap was worked out at, or -1 if it never has been
+     */
+    private final int[] versions;
+
+    /**
+     * Create a placement map for the given board
+     *
+     * @param board the board to find placements on
+     */
+    public PlacementMap(Board board) {
+        this.board = board;
+
+        legal = new BitSet[PieceShape.shapeCount()];
+        versions = new int[legal.length];
+        for (int i = 0; i < legal.length; i++) {
+            legal[i] = new BitSet(board.getCols() * board.getRows());
+            versions[i] = -1;
+        }
+    }
+
+    /**
+     * Get the legal centre positions of a shape, working them out if the board has changed. The
+     * returned set must not be modified.
+     *
+     * @param shape the shape
+     * @return the legal positions, indexed by {@code x * rows + y}
+     */
+    public BitSet getLegal(PieceShape shape) {
+        var id = shape.getId();
+        var bits = legal[id];
+        if (versions[id] == board.getVersion()) {
+            return bits;
+        }
+
+        var occupancy = board.getOccupancy();
+        var rows = board.getRows();
+        var pivotX = shape.getPivotX();
+        var pivotY = shape.getPivotY();
+
+        bits.clear();
+
+        // Only centres that keep the whole shape inside the board can be legal
+        for (int x = Math.max(pivotX - shape.getMinX(), 0);
+                x < Math.min(board.getCols() + pivotX - shape.getMaxX(), board.getCols()); x++) {
+            for (int y = Math.max(pivotY - shape.getMinY(), 0);
+                    y < Math.min(rows + pivotY - shape.getMaxY(), rows); y++) {
+                if (occupancy.fits(shape, x - pivotX, y - pivotY)) {
+                    bits.set(x * rows + y);
+                }
+            }
+        }
+
+        versions[id] = board.getVersion();
+        return bits;
+    }
+
+    /**
+     * Checks if the given piece can be played at the specified position. This is the same as
+     * {@link Board#canPlayPiece}, but positions on the board are looked up in the map.
+     *
+     * @param piece the piece to check
+     * @param x     the x position of the centre of the piece
+     * @param y     the y position of the centre of the piece
+     * @return {@code true} if the piece can be played there
+     */
+    public boolean canPlayPiece(GamePiece piece, int x, int y) {
+        var shape = piece.getShape();
+        if (!board.inBounds(x, y)) {
+            // Not in the map, which only covers centres on the board
+            return board.canPlayPiece(piece, x, y);
+        }
+        if (versions[shape.getId()] != board.getVersion()
+                && board.getCols() * board.getRows() > REBUILD_LIMIT) {
+            return board.canPlayPiece(piece, x, y);
+        }
+        return getLegal(shape).get(x * board.getRows() + y);
+    }
+
+    /**
+     * Get the number of positions the given piece can be played at in its current rotation
+     *
+     * @param piece the piece
+     * @return the number of legal positions
+     */
+    public int countPlacements(GamePiece piece) {
+        return getLegal(piece.getShape()).cardinality();
+    }
+
+    /**
+     * Checks if the given piece can be played anywhere, in any rotation
+     *
+     * @param piece the piece
+     * @return {@code true} if there is at least one legal placement
+     */
+    public boolean hasPlacement(GamePiece piece) {
+        var shape = piece.getShape();
+        for (int r = 0; r < PieceShape.ROTATIONS; r++) {
+            if (!getLegal(shape.rotated(r)).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the board this map is for
+     *
+     * @return the board
+     */
+    public Board getBoard() {
+        return board;
+    }
+}
@@ -0,0 +1,40 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The actions that change the state of a {@link GameEngine}. Together with the seed of the engine's
+ * random number generator, these are enough to reproduce a game.
+ */
+public enum PlayerAction {
+
+    /**
+     * An attempt to place the current piece, with the column and row of its centre
+     */
+    PLACE,
+
+    /**
+     * A rotation of the current piece, with the number of clockwise rotations
+     */
+    ROTATE,
+
+    /**
+     * A swap of the current and next pieces
+     */
+    SWAP,
+
+    /**
+     * The timer running out, losing a life
+     */
+    TIMER;
+
+    private static final PlayerAction[] VALUES = values();
+
+    /**
+     * Get an action from its ordinal, without copying the values array
+     *
+     * @param ordinal the ordinal
+     * @return the action
+     */
+    public static PlayerAction fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,145 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.Arrays;
+
+/**
+ * A {@link PieceGenerator} that works out pieces ahead of time into a queue, so upcoming pieces can
+ * be looked at. The queue is a ring buffer of {@code int}s, so dealing a piece does not allocate.
+ */
+public abstract class QueuedPieceGenerator implements PieceGenerator {
+
+    /**
+     * The upcoming pieces. The length is always a power of 2.
+     */
+    private int[] queue = new int[32];
+
+    /**
+     * The position of the next piece in {@link #queue}
+     */
+    private int head = 0;
+
+    /**
+     * The number of pieces in {@link #queue}
+     */
+    private int size = 0;
+
+    /**
+     * The last piece added to the queue, even if it has since been taken, or -1
+     */
+    private int last = -1;
+
+    /**
+     * Add at least one piece to the end of the queue with {@link #push(int)}
+     */
+    protected abstract void generate();
+
+    /**
+     * Add a piece to the end of the queue
+     *
+     * @param piece the piece index
+     */
+    protected void push(int piece) {
+        if (size == queue.length) {
+            // Unroll the ring into a larger array
+            var larger = new int[queue.length * 2];
+            for (int i = 0; i < size; i++) {
+                larger[i] = queue[(head + i) & (queue.length - 1)];
+            }
+            queue = larger;
+            head = 0;
+        }
+        queue[(head + size) & (queue.length - 1)] = piece;
+        size++;
+        last = piece;
+    }
+
+    /**
+     * Get the last piece added to the queue, even if it has since been taken
+     *
+     * @return the piece index, or -1 if no piece has been added since the last reset
+     */
+    protected int last() {
+        return last;
+    }
+
+    @Override
+    public int next() {
+        while (size == 0) {
+            generate();
+        }
+        var piece = queue[head];
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        return piece;
+    }
+
+    @Override
+    public int peek(int ahead) {
+        while (size <= ahead) {
+            generate();
+        }
+        return queue[(head + ahead) & (queue.length - 1)];
+    }
+
+    @Override
+    public void reset() {
+        head = 0;
+        size = 0;
+        last = -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br> The state starts with the last piece added, then the number of queued pieces, followed by
+     * the pieces.
+     */
+    @Override
+    public int[] saveState() {
+        var state = new int[size + 2];
+        state[0] = last;
+        state[1] = size;
+        for (int i = 0; i < size; i++) {
+            state[i + 2] = queue[(head + i) & (queue.length - 1)];
+        }
+        return state;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br> Subclasses with their own state should use {@link #restoreQueue(int[])} and read their
+     * state from the values after the queue.
+     */
+    @Override
+    public void restoreState(int[] state) {
+        restoreQueue(state);
+    }
+
+    /**
+     * Restore the queue from the start of a state returned by {@link #saveState()}
+     *
+     * @param state the state
+     * @return the number of values read
+     */
+    protected int restoreQueue(int[] state) {
+        reset();
+        var count = state[1];
+        for (int i = 0; i < count; i++) {
+            push(state[i + 2]);
+        }
+        last = state[0];
+        return count + 2;
+    }
+
+    /**
+     * Add extra values to the end of a saved state
+     *
+     * @param state the state saved by this class
+     * @param extra the values to add
+     * @return the combined state
+     */
+    protected static int[] append(int[] state, int[] extra) {
+        var combined = Arrays.copyOf(state, state.length + extra.length);
+        System.arraycopy(extra, 0, combined, state.length, extra.length);
+        return combined;
+    }
+}
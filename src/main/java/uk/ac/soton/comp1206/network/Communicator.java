@@ -7,6 +7,10 @@ import com.neovisionaries.ws.client.WebSocketFactory;
 import com.neovisionaries.ws.client.WebSocketFrame;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.scene.control.Alert;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,95 +26,376 @@ public class Communicator {
 
     private static final Logger logger = LogManager.getLogger(Communicator.class);
     private static final boolean REQUIRE_CONNECTION = false;
+    /**
+     * How long to wait for the connection to be made by default, in milliseconds
+     */
+    private static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    /**
+     * The most messages that can wait to be sent. Once full, the oldest {@code BOARD},
+     * {@code SCORE} or {@code LIVES} message is dropped, and other messages are handled by the
+     * {@link OverflowPolicy}.
+     */
+    private static final int MAX_QUEUED = 256;
+    /**
+     * How long {@link #flush()} waits for the queued messages to be written, in milliseconds
+     */
+    private static final long FLUSH_TIMEOUT = 500;
+    /**
+     * The most messages to write before flushing the socket
+     */
+    private static final int MAX_BATCH = 32;
     /**
      * Attached communication listeners listening to messages on this Communicator. Each will be
      * sent any messages.
      */
     private final List<CommunicationsListener> handlers = new ArrayList<>();
-    private WebSocket ws = null;
+    /**
+     * Messages waiting to be written to the socket by the writer thread
+     */
+    private final OutboundQueue outbound;
+    /**
+     * Guards the connection state and the socket
+     */
+    private final Object lock = new Object();
+    /**
+     * Whether the communicator is connected, only updated on the FX thread
+     */
+    private final ReadOnlyObjectWrapper<ConnectionState> state =
+            new ReadOnlyObjectWrapper<>(ConnectionState.DISCONNECTED);
+    private final String server;
+    /**
+     * How long to wait for the connection to be made, in milliseconds
+     */
+    private final int connectTimeout;
+    /**
+     * The current connection state, which may be ahead of {@link #state}. Guarded by
+     * {@link #lock}.
+     */
+    private ConnectionState currentState = ConnectionState.DISCONNECTED;
+    /**
+     * The current socket. Only changed while holding {@link #lock}, but read by the writer thread
+     * without it.
+     */
+    private volatile WebSocket ws = null;
 
     /**
-     * Create a new communicator to the given web socket server
+     * Create a new communicator to the given web socket server. Call {@link #connect()} to
+     * connect to it.
      *
      * @param server server to connect to
      */
     public Communicator(String server) {
+        this(server, DEFAULT_CONNECT_TIMEOUT);
+    }
 
+    /**
+     * Create a new communicator to the given web socket server. Call {@link #connect()} to
+     * connect to it.
+     *
+     * @param server         server to connect to
+     * @param connectTimeout how long to wait for the connection to be made, in milliseconds
+     */
+    public Communicator(String server, int connectTimeout) {
+        this(server, connectTimeout, OverflowPolicy.DROP);
+    }
+
+    /**
+     * Create a new communicator to the given web socket server. Call {@link #connect()} to
+     * connect to it.
+     *
+     * @param server         server to connect to
+     * @param connectTimeout how long to wait for the connection to be made, in milliseconds
+     * @param overflowPolicy what {@link #send} does when the queue is full of messages that can't
+     *                       be dropped
+     */
+    public Communicator(String server, int connectTimeout, OverflowPolicy overflowPolicy) {
+        this.server = server;
+        this.connectTimeout = connectTimeout;
+        this.outbound = new OutboundQueue(MAX_QUEUED, overflowPolicy);
+
+        var writer = new Thread(this::writeMessages, "Communicator writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Start connecting to the server in the background. Messages sent while connecting are queued
+     * until the connection is made. Does nothing if already connected or connecting.
+     */
+    public void connect() {
+        WebSocket socket;
         try {
             var socketFactory = new WebSocketFactory();
+            socketFactory.setConnectionTimeout(connectTimeout);
+            socket = socketFactory.createSocket(server);
+            // The writer thread flushes once per batch of messages
+            socket.setAutoFlush(false);
+        } catch (Exception e) {
+            connectionFailed(e);
+            return;
+        }
 
-            //Connect to the server
-            ws = socketFactory.createSocket(server);
-            ws.connect();
-            logger.info(Colour.green(Colour.bold("Connected to " + server)));
+        synchronized (lock) {
+            if (currentState == ConnectionState.CONNECTING
+                    || currentState == ConnectionState.CONNECTED) {
+                return;
+            }
+            ws = socket;
+            setState(ConnectionState.CONNECTING);
+        }
 
-            //When a message is received, call the receive method
-            ws.addListener(new WebSocketAdapter() {
-                @Override
-                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-                    Communicator.this.receive(websocket, message);
-                }
+        //When a message is received, call the receive method
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onTextMessage(WebSocket websocket, String message) throws Exception {
+                Communicator.this.receive(websocket, message);
+            }
 
-                @Override
-                public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame)
-                        throws Exception {
-                    logger.info("Ping? Pong!");
-                }
-            });
+            @Override
+            public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame)
+                    throws Exception {
+                logger.info("Ping? Pong!");
+            }
+        });
 
-            //Error handling
-            ws.addListener(new WebSocketAdapter() {
-                @Override
-                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-                    if (message.startsWith("ERROR")) {
-                        logger.error(message);
-                    }
-                }
+        //Connection state
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onConnected(WebSocket websocket, Map<String, List<String>> headers)
+                    throws Exception {
+                connected(websocket);
+            }
+
+            @Override
+            public void onConnectError(WebSocket websocket, WebSocketException e)
+                    throws Exception {
+                connectionFailed(e);
+            }
 
-                @Override
-                public void handleCallbackError(WebSocket webSocket, Throwable throwable)
-                        throws Exception {
-                    logger.error("Callback Error:" + throwable.getMessage());
-                    throwable.printStackTrace();
+            @Override
+            public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                    WebSocketFrame clientCloseFrame, boolean closedByServer) throws Exception {
+                logger.warn(Colour.warn("Disconnected from " + server));
+                logger.info("Outgoing messages: " + outbound.getStats());
+                synchronized (lock) {
+                    if (ws == websocket) {
+                        outbound.setOpen(false);
+                        outbound.clear();
+                        setState(ConnectionState.DISCONNECTED);
+                    }
                 }
+            }
+        });
 
-                @Override
-                public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
-                    logger.error("Error:" + e.getMessage());
-                    e.printStackTrace();
+        //Error handling
+        socket.addListener(new WebSocketAdapter() {
+            @Override
+            public void onTextMessage(WebSocket websocket, String message) throws Exception {
+                if (message.startsWith("ERROR")) {
+                    logger.error(message);
                 }
-            });
+            }
 
-        } catch (Exception e) {
-            logger.error(Colour.error("Socket error: " + e.getMessage()));
+            @Override
+            public void handleCallbackError(WebSocket webSocket, Throwable throwable)
+                    throws Exception {
+                logger.error("Callback Error:" + throwable.getMessage());
+                throwable.printStackTrace();
+            }
 
-            if (REQUIRE_CONNECTION) {
+            @Override
+            public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
+                logger.error("Error:" + e.getMessage());
                 e.printStackTrace();
+            }
+        });
+
+        //Connect to the server on the socket's own thread
+        logger.info("Connecting to " + server);
+        socket.connectAsynchronously();
+    }
+
+    /**
+     * Called once the connection is made. Lets the writer send the messages queued while
+     * connecting.
+     *
+     * @param socket the socket that connected
+     */
+    private void connected(WebSocket socket) {
+        logger.info(Colour.green(Colour.bold("Connected to " + server)));
+
+        synchronized (lock) {
+            if (ws != socket) {
+                return;
+            }
+            setState(ConnectionState.CONNECTED);
+            outbound.setOpen(true);
+        }
+    }
+
+    /**
+     * Called if the connection can't be made. Any queued messages are dropped.
+     *
+     * @param e the reason the connection failed
+     */
+    private void connectionFailed(Exception e) {
+        logger.error(Colour.error("Socket error: " + e.getMessage()));
+
+        synchronized (lock) {
+            outbound.clear();
+            setState(ConnectionState.FAILED);
+        }
+
+        if (REQUIRE_CONNECTION) {
+            e.printStackTrace();
+            Platform.runLater(() -> {
                 Alert error = new Alert(Alert.AlertType.ERROR,
                         "Unable to communicate with the TetrECS server\n\n" + e.getMessage()
                                 + "\n\nPlease ensure you are connected to the VPN");
                 error.showAndWait();
                 System.exit(1);
-            } else {
-                logger.warn(Colour.warn("Continuing without network"));
-            }
+            });
+        } else {
+            logger.warn(Colour.warn("Continuing without network"));
+        }
+    }
+
+    /**
+     * Update the connection state. Must hold {@link #lock}.
+     *
+     * @param newState the new state
+     */
+    private void setState(ConnectionState newState) {
+        currentState = newState;
+        if (Platform.isFxApplicationThread()) {
+            state.set(newState);
+        } else {
+            Platform.runLater(() -> state.set(newState));
         }
     }
 
     /**
-     * Send a message to the server
+     * Send a message to the server. The message is queued and written by the writer thread, so
+     * this never waits on the network. If the connection is still being made, the message is sent
+     * once it is.
+     * <p>
+     * A {@code BOARD}, {@code SCORE} or {@code LIVES} message replaces one of the same kind that
+     * hasn't been sent yet, since only the latest matters. These are the only messages dropped if
+     * the queue fills up; if it is full of other messages, the {@link OverflowPolicy} decides
+     * whether to drop the message, wait for room or throw. By default the message is dropped and
+     * an error logged.
      *
      * @param message Message to send
+     * @throws IllegalStateException if the queue is full and the overflow policy is
+     *                               {@code REJECT}, which is only used if asked for
      */
-    public void send(String message) {
-        logger.info("Sending message: " + Colour.yellow(Colour.italic(message)));
+    public void send(String message) throws IllegalStateException {
+        synchronized (lock) {
+            if (currentState != ConnectionState.CONNECTED
+                    && currentState != ConnectionState.CONNECTING) {
+                logger.error(Colour.error("Not connected, message not sent: " + message));
+                return;
+            }
+        }
 
+        // Not holding the lock, since the BLOCK policy waits for the writer to make room
         try {
-            ws.sendText(message);
-        } catch (Exception e) {
+            outbound.offer(message);
+        } catch (IllegalStateException e) {
             logger.error(Colour.error(e.getMessage()));
+            throw e;
+        } catch (InterruptedException e) {
+            logger.error(Colour.error("Interrupted, message not sent: " + message));
+            Thread.currentThread().interrupt();
         }
+    }
 
+    /**
+     * Wait a short time for the queued messages to be written to the socket, such as before
+     * closing the program. This blocks, so don't call it on the FX thread.
+     *
+     * @return {@code true} if every queued message was written
+     */
+    public boolean flush() {
+        return flush(FLUSH_TIMEOUT);
+    }
+
+    /**
+     * Wait for the queued messages to be written to the socket. Gives up straight away if not
+     * connected.
+     *
+     * @param timeout the longest to wait, in milliseconds
+     * @return {@code true} if every queued message was written
+     */
+    public boolean flush(long timeout) {
+        try {
+            if (outbound.awaitWritten(timeout)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.warn(Colour.warn("Could not send every message: " + outbound.getStats()));
+        return false;
+    }
+
+    /**
+     * Write the queued messages to the socket as they arrive, flushing once per batch. Runs on the
+     * writer thread until the program exits.
+     */
+    private void writeMessages() {
+        while (true) {
+            List<String> batch;
+            try {
+                batch = outbound.take(MAX_BATCH);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            var socket = ws;
+            try {
+                for (var message : batch) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Sending message: " + Colour.yellow(Colour.italic(message)));
+                    }
+                    socket.sendText(message);
+                }
+                socket.flush();
+            } catch (Exception e) {
+                logger.error(Colour.error("Could not send messages: " + e.getMessage()));
+            } finally {
+                outbound.batchWritten();
+            }
+        }
+    }
+
+    /**
+     * Get the counts of messages queued, sent, coalesced and dropped so far
+     *
+     * @return the counts
+     */
+    public QueueStats getQueueStats() {
+        return outbound.getStats();
+    }
+
+    /**
+     * Get the state of the connection to the server
+     *
+     * @return the connection state property, only updated on the FX thread
+     */
+    public ReadOnlyObjectProperty<ConnectionState> stateProperty() {
+        return state.getReadOnlyProperty();
+    }
+
+    /**
+     * Check if the communicator is connected to the server
+     *
+     * @return {@code true} if connected
+     */
+    public boolean isConnected() {
+        synchronized (lock) {
+            return currentState == ConnectionState.CONNECTED;
+        }
     }
 
     /**
@@ -152,4 +437,61 @@ public class Communicator {
         this.handlers.remove(listener);
     }
 
+    /**
+     * Counts of what has happened to the messages sent
+     *
+     * @param queued    messages passed to {@link #send}
+     * @param sent      messages written to the socket
+     * @param coalesced messages replaced by a newer one of the same kind before being sent
+     * @param dropped   messages dropped or rejected because the queue was full, or dropped
+     *                  because the connection was lost
+     * @param batches   batches written, each followed by a flush
+     * @param maxDepth  the most messages that have been waiting at once
+     * @param depth     the messages waiting now
+     */
+    public record QueueStats(long queued, long sent, long coalesced, long dropped, long batches,
+                             int maxDepth, int depth) {
+
+    }
+
+    /**
+     * What {@link #send} does when the queue is full and there is no state message to drop
+     */
+    public enum OverflowPolicy {
+        /**
+         * Log an error and drop the new message. The default.
+         */
+        DROP,
+        /**
+         * Wait until the writer has made room
+         */
+        BLOCK,
+        /**
+         * Log an error and throw an {@link IllegalStateException}
+         */
+        REJECT
+    }
+
+    /**
+     * The state of the connection to the server
+     */
+    public enum ConnectionState {
+        /**
+         * Not connected, and not trying to connect
+         */
+        DISCONNECTED,
+        /**
+         * Waiting for the connection to be made
+         */
+        CONNECTING,
+        /**
+         * Connected to the server
+         */
+        CONNECTED,
+        /**
+         * The connection could not be made
+         */
+        FAILED
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,257 @@
+package uk.ac.soton.comp1206.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.utils.Colour;
+
+/**
+ * The messages waiting to be sent to the server by the {@link Communicator}'s writer thread.
+ * <p>
+ * Messages that only report the latest state, such as {@code BOARD} and {@code SCORE}, replace any
+ * message of the same kind that is still waiting, so a backlog never sends out of date snapshots.
+ * The queue holds at most a fixed number of messages. Once full, the oldest state message is
+ * dropped to make room; other messages, such as {@code PIECE} requests, are never dropped, so if
+ * the queue is full of them the {@link Communicator.OverflowPolicy} decides what happens. Messages
+ * are only handed to the writer while the queue is open, that is, while the connection is up.
+ */
+final class OutboundQueue {
+
+    private static final Logger logger = LogManager.getLogger(OutboundQueue.class);
+
+    /**
+     * The kinds of message where only the latest one matters
+     */
+    private static final Set<String> COALESCED = Set.of("BOARD", "SCORE", "LIVES");
+
+    /**
+     * The most messages that can be waiting
+     */
+    private final int capacity;
+
+    /**
+     * What to do with a message that isn't a state message when the queue is full of them
+     */
+    private final Communicator.OverflowPolicy overflowPolicy;
+
+    /**
+     * The waiting messages, oldest first
+     */
+    private final ArrayDeque<Slot> slots = new ArrayDeque<>();
+
+    /**
+     * The waiting message of each coalesced kind
+     */
+    private final Map<String, Slot> latest = new HashMap<>();
+
+    /**
+     * Whether messages can be taken to be sent
+     */
+    private boolean open = false;
+
+    /**
+     * Whether the writer has taken messages and not finished writing them yet
+     */
+    private boolean writing = false;
+
+    // Counts since the queue was created
+    private long queued = 0;
+    private long sent = 0;
+    private long coalesced = 0;
+    private long dropped = 0;
+    private long batches = 0;
+    private int maxDepth = 0;
+
+    /**
+     * Create an empty, closed queue
+     *
+     * @param capacity       the most messages that can be waiting
+     * @param overflowPolicy what to do with a message that isn't a state message when the queue
+     *                       is full of them
+     */
+    OutboundQueue(int capacity, Communicator.OverflowPolicy overflowPolicy) {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Add a message to the end of the queue, or in place of a waiting message it supersedes
+     *
+     * @param message the message
+     * @throws IllegalStateException if the queue is full of messages that can't be dropped and
+     *                               the overflow policy is {@code REJECT}
+     * @throws InterruptedException  if interrupted while waiting for room, with the {@code BLOCK}
+     *                               policy
+     */
+    synchronized void offer(String message) throws IllegalStateException, InterruptedException {
+        queued++;
+
+        var space = message.indexOf(' ');
+        var kind = space < 0 ? message : message.substring(0, space);
+        var isState = COALESCED.contains(kind);
+
+        if (isState) {
+            var waiting = latest.get(kind);
+            if (waiting != null) {
+                waiting.message = message;
+                coalesced++;
+                return;
+            }
+        }
+
+        while (slots.size() >= capacity && !dropOldestState()) {
+            if (isState) {
+                // Nothing to make room for a snapshot, and a newer one will follow
+                dropped++;
+                logger.warn(Colour.warn("Outgoing queue full, dropped: " + message));
+                return;
+            }
+
+            if (overflowPolicy == Communicator.OverflowPolicy.DROP) {
+                dropped++;
+                logger.error(Colour.error("Outgoing queue full, dropped: " + message));
+                return;
+            }
+            if (overflowPolicy == Communicator.OverflowPolicy.REJECT) {
+                dropped++;
+                throw new IllegalStateException("Outgoing queue full, could not send: " + message);
+            }
+            logger.warn(Colour.warn("Outgoing queue full, waiting to send: " + message));
+            wait();
+        }
+
+        var slot = new Slot(kind, message);
+        slots.add(slot);
+        if (isState) {
+            latest.put(kind, slot);
+        }
+        maxDepth = Math.max(maxDepth, slots.size());
+
+        notifyAll();
+    }
+
+    /**
+     * Wait until the queue is open and has messages, then take them
+     *
+     * @param max the most messages to take
+     * @return the messages, oldest first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized List<String> take(int max) throws InterruptedException {
+        while (!open || slots.isEmpty()) {
+            wait();
+        }
+
+        var batch = new ArrayList<String>(Math.min(max, slots.size()));
+        while (batch.size() < max && !slots.isEmpty()) {
+            var slot = slots.poll();
+            latest.remove(slot.kind, slot);
+            batch.add(slot.message);
+        }
+
+        sent += batch.size();
+        batches++;
+        writing = true;
+        notifyAll();
+        return batch;
+    }
+
+    /**
+     * Called by the writer once it has written and flushed the messages it last took
+     */
+    synchronized void batchWritten() {
+        writing = false;
+        notifyAll();
+    }
+
+    /**
+     * Wait until every message queued so far has been written, or the queue is closed
+     *
+     * @param timeout the longest to wait, in milliseconds
+     * @return {@code true} if every message was written
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized boolean awaitWritten(long timeout) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + timeout;
+        while (!slots.isEmpty() || writing) {
+            var remaining = deadline - System.currentTimeMillis();
+            if (!open || remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Drop the oldest waiting state message, to make room for another message
+     *
+     * @return {@code true} if there was a state message to drop
+     */
+    private boolean dropOldestState() {
+        var iterator = slots.iterator();
+        while (iterator.hasNext()) {
+            var slot = iterator.next();
+            if (COALESCED.contains(slot.kind)) {
+                iterator.remove();
+                latest.remove(slot.kind, slot);
+                dropped++;
+                logger.warn(Colour.warn("Outgoing queue full, dropped: " + slot.message));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set whether messages can be taken to be sent. While closed, messages wait in the queue.
+     *
+     * @param open whether the queue is open
+     */
+    synchronized void setOpen(boolean open) {
+        this.open = open;
+        notifyAll();
+    }
+
+    /**
+     * Drop every waiting message
+     */
+    synchronized void clear() {
+        dropped += slots.size();
+        slots.clear();
+        latest.clear();
+        notifyAll();
+    }
+
+    /**
+     * Get the counts of what the queue has done so far
+     *
+     * @return the counts
+     */
+    synchronized Communicator.QueueStats getStats() {
+        return new Communicator.QueueStats(queued, sent, coalesced, dropped, batches, maxDepth,
+                slots.size());
+    }
+
+    /**
+     * A waiting message
+     */
+    private static final class Slot {
+
+        /**
+         * The first word of the message
+         */
+        private final String kind;
+        private String message;
+
+        private Slot(String kind, String message) {
+            this.kind = kind;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.PlayerAction;
+import uk.ac.soton.comp1206.utils.SeededRandom;
+
+/**
+ * Reads a recording written by an {@link InputRecorder}, one action at a time.
+ */
+public class InputReader implements AutoCloseable {
+
+    private final InputStream in;
+
+    private final long seed;
+    private final int cols;
+    private final int rows;
+
+    private PlayerAction action;
+    private int a;
+    private int b;
+    private long time = 0;
+
+    /**
+     * Open a recording and read its header
+     *
+     * @param in the stream to read from, which is closed with the reader
+     * @throws IOException if the stream cannot be read or is not a recording
+     */
+    public InputReader(InputStream in) throws IOException {
+        this.in = new BufferedInputStream(in);
+
+        var magic = this.in.readNBytes(InputRecorder.MAGIC.length);
+        if (!Arrays.equals(magic, InputRecorder.MAGIC)) {
+            throw new IOException("Not a recording");
+        }
+        var version = this.in.read();
+        if (version != InputRecorder.VERSION) {
+            throw new IOException("Unsupported recording version: " + version);
+        }
+
+        seed = Varint.readSigned(this.in);
+        cols = (int) Varint.readUnsigned(this.in);
+        rows = (int) Varint.readUnsigned(this.in);
+    }
+
+    /**
+     * Read the next action
+     *
+     * @return {@code true} if an action was read, {@code false} at the end of the recording
+     * @throws IOException if the stream cannot be read
+     */
+    public boolean next() throws IOException {
+        var ordinal = in.read();
+        if (ordinal < 0) {
+            return false;
+        }
+
+        action = PlayerAction.fromOrdinal(ordinal);
+        time += Varint.readUnsigned(in);
+        a = 0;
+        b = 0;
+        switch (action) {
+            case PLACE -> {
+                a = (int) Varint.readSigned(in);
+                b = (int) Varint.readSigned(in);
+            }
+            case ROTATE -> a = (int) Varint.readSigned(in);
+            default -> {
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a new engine set up the same way as the recorded game, ready to be started
+     *
+     * @return the engine
+     */
+    public GameEngine createEngine() {
+        return new GameEngine(cols, rows, new SeededRandom(seed));
+    }
+
+    /**
+     * Start the given engine and apply every remaining action to it
+     *
+     * @param engine an engine from {@link #createEngine()}
+     * @return the number of actions applied
+     * @throws IOException if the stream cannot be read
+     */
+    public int replay(GameEngine engine) throws IOException {
+        engine.start();
+        int count = 0;
+        while (next()) {
+            engine.apply(action, a, b);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Get the seed of the recorded game's random number generator
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the number of columns in the recorded game's board
+     *
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows in the recorded game's board
+     *
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the last action read
+     *
+     * @return the action
+     */
+    public PlayerAction getAction() {
+        return action;
+    }
+
+    /**
+     * Get the first argument of the last action read
+     *
+     * @return the argument
+     */
+    public int getA() {
+        return a;
+    }
+
+    /**
+     * Get the second argument of the last action read
+     *
+     * @return the argument
+     */
+    public int getB() {
+        return b;
+    }
+
+    /**
+     * Get the time of the last action read, in microseconds since recording started
+     *
+     * @return the time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Close the stream
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
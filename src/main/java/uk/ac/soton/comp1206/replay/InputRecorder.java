@@ -0,0 +1,230 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.PlayerActionListener;
+import uk.ac.soton.comp1206.game.PlayerAction;
+
+/**
+ * Records the actions applied to a game, so that it can be reproduced later.
+ * <p>
+ * Recording an action only stores it in a preallocated ring buffer, so it is cheap enough to do on
+ * the FX thread. A background thread takes actions from the buffer and writes them to the stream.
+ * <p>
+ * The recording starts with a header: the bytes {@code TRIR}, a format version, then the seed of the
+ * game's random number generator, the number of columns and the number of rows, as varints. Each
+ * action is then written as a frame: its {@link PlayerAction} ordinal as one byte, the microseconds
+ * since the previous action as an unsigned varint, then its arguments as signed varints (two for
+ * {@link PlayerAction#PLACE}, one for {@link PlayerAction#ROTATE}, none otherwise).
+ */
+public class InputRecorder implements PlayerActionListener, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(InputRecorder.class);
+
+    /**
+     * The bytes at the start of every recording
+     */
+    static final byte[] MAGIC = "TRIR".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the format written
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The number of actions the ring buffer can hold. Must be a power of 2.
+     */
+    private static final int CAPACITY = 4096;
+
+    /**
+     * How often the writer thread checks for new actions, in nanoseconds
+     */
+    private static final long FLUSH_INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * The actions in the buffer, packed as {@code ordinal << 32 | a << 16 | b} with the arguments
+     * stored as 16-bit values
+     */
+    private final long[] actions = new long[CAPACITY];
+
+    /**
+     * The time each action in the buffer was recorded, from {@link System#nanoTime()}
+     */
+    private final long[] times = new long[CAPACITY];
+
+    /**
+     * The number of actions recorded so far. Only written by the recording thread.
+     */
+    private volatile long head = 0;
+
+    /**
+     * The number of actions written so far. Only written by the writer thread.
+     */
+    private volatile long tail = 0;
+
+    private volatile boolean closed = false;
+
+    /**
+     * Whether the writer thread has given up after failing to write. The stream is still closed by
+     * {@link #close()}.
+     */
+    private volatile boolean failed = false;
+
+    private final OutputStream out;
+    private final Thread writer;
+
+    /**
+     * The time of the last action written
+     */
+    private long lastTime;
+
+    /**
+     * Start a recording, writing the header straight away
+     *
+     * @param out  the stream to write to, which is closed with the recorder
+     * @param seed the seed of the game's random number generator
+     * @param cols the number of columns in the board
+     * @param rows the number of rows in the board
+     * @throws IOException if the header cannot be written
+     */
+    public InputRecorder(OutputStream out, long seed, int cols, int rows) throws IOException {
+        this.out = new BufferedOutputStream(out);
+
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+        Varint.writeSigned(this.out, seed);
+        Varint.writeUnsigned(this.out, cols);
+        Varint.writeUnsigned(this.out, rows);
+
+        lastTime = System.nanoTime();
+
+        writer = new Thread(this::writeLoop, "Input recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Record an action. Should only be called from one thread.
+     *
+     * @param action the action
+     * @param a      the first argument
+     * @param b      the second argument
+     */
+    @Override
+    public void onAction(PlayerAction action, int a, int b) {
+        if (closed || failed) {
+            return;
+        }
+
+        var index = head;
+        while (index - tail == CAPACITY) {
+            // Only happens if actions come in faster than they can be written
+            if (failed) {
+                return;
+            }
+            LockSupport.unpark(writer);
+            Thread.onSpinWait();
+        }
+
+        var slot = (int) index & (CAPACITY - 1);
+        actions[slot] = (long) action.ordinal() << 32 | (a & 0xFFFFL) << 16 | (b & 0xFFFFL);
+        times[slot] = System.nanoTime();
+        head = index + 1;
+
+        if (index - tail >= CAPACITY / 2) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Write actions from the buffer until the recorder is closed
+     */
+    private void writeLoop() {
+        try {
+            while (!closed) {
+                LockSupport.parkNanos(FLUSH_INTERVAL);
+                if (drain()) {
+                    out.flush();
+                }
+            }
+            drain();
+            out.flush();
+        } catch (IOException e) {
+            failed = true;
+            logger.error("Failed to write recording", e);
+        }
+    }
+
+    /**
+     * Write every action in the buffer
+     *
+     * @return {@code true} if anything was written
+     * @throws IOException if the stream cannot be written to
+     */
+    private boolean drain() throws IOException {
+        var end = head;
+        var index = tail;
+        if (index == end) {
+            return false;
+        }
+
+        for (; index < end; index++) {
+            var slot = (int) index & (CAPACITY - 1);
+            var packed = actions[slot];
+            var action = PlayerAction.fromOrdinal((int) (packed >>> 32));
+
+            out.write(action.ordinal());
+            Varint.writeUnsigned(out, TimeUnit.NANOSECONDS.toMicros(times[slot] - lastTime));
+            lastTime = times[slot];
+
+            switch (action) {
+                case PLACE -> {
+                    Varint.writeSigned(out, (short) (packed >>> 16));
+                    Varint.writeSigned(out, (short) packed);
+                }
+                case ROTATE -> Varint.writeSigned(out, (short) (packed >>> 16));
+                default -> {
+                }
+            }
+
+            tail = index + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of actions recorded
+     *
+     * @return the number of actions
+     */
+    public long getActionCount() {
+        return head;
+    }
+
+    /**
+     * Write any remaining actions and close the stream
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        logger.info("Recorded {} actions", head);
+    }
+}
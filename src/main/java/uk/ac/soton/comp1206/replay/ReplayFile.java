@@ -0,0 +1,265 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.GameState;
+import uk.ac.soton.comp1206.game.PlayerAction;
+import uk.ac.soton.comp1206.utils.SeededRandom;
+
+/**
+ * A replay file written by a {@link ReplayWriter}, memory-mapped so that any point in the game can
+ * be reached quickly.
+ * <p>
+ * Seeking finds the last keyframe at or before the requested action with a binary search of the
+ * index, restores it, then applies the actions after it. At most one keyframe interval of actions is
+ * simulated, however long the game was.
+ */
+public class ReplayFile {
+
+    private final MappedByteBuffer buffer;
+
+    private final long seed;
+    private final int cols;
+    private final int rows;
+    private final int interval;
+
+    private final int indexOffset;
+    private final int keyframes;
+    private final long actions;
+
+    /**
+     * The engine the replay is played on
+     */
+    private final GameEngine engine;
+
+    /**
+     * The number of actions applied to the engine so far
+     */
+    private long position = -1;
+
+    /**
+     * The offset of the next record after {@link #position}
+     */
+    private int offset;
+
+    /**
+     * The time of the last action applied, in microseconds
+     */
+    private long time;
+
+    /**
+     * Open a replay file
+     *
+     * @param path the file
+     * @throws IOException if the file cannot be read or is not a replay
+     */
+    public ReplayFile(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Replay is too large to map");
+            }
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        var magic = new byte[ReplayWriter.MAGIC.length];
+        buffer.get(0, magic);
+        if (!Arrays.equals(magic, ReplayWriter.MAGIC)) {
+            throw new IOException("Not a replay");
+        }
+        if (buffer.get(magic.length) != ReplayWriter.VERSION) {
+            throw new IOException("Unsupported replay version: " + buffer.get(magic.length));
+        }
+
+        var header = buffer.duplicate().position(magic.length + 1);
+        seed = Varint.readSigned(header);
+        cols = (int) Varint.readUnsigned(header);
+        rows = (int) Varint.readUnsigned(header);
+        interval = (int) Varint.readUnsigned(header);
+
+        var footer = buffer.capacity() - ReplayWriter.FOOTER_SIZE;
+        if (footer < header.position()) {
+            throw new IOException("Replay has no index; it may not have been closed");
+        }
+        var indexMagic = new byte[ReplayWriter.INDEX_MAGIC.length];
+        buffer.get(buffer.capacity() - indexMagic.length, indexMagic);
+        if (!Arrays.equals(indexMagic, ReplayWriter.INDEX_MAGIC)) {
+            throw new IOException("Replay has no index; it may not have been closed");
+        }
+        indexOffset = (int) buffer.getLong(footer);
+        keyframes = buffer.getInt(footer + Long.BYTES);
+        actions = buffer.getLong(footer + Long.BYTES + Integer.BYTES);
+
+        engine = new GameEngine(cols, rows, new SeededRandom(seed));
+    }
+
+    /**
+     * Move the replay to just after the given number of actions
+     *
+     * @param target the number of actions to have applied, from 0 to {@link #getActionCount()}
+     * @return the engine, in the state it was in at that point
+     */
+    public GameEngine seek(long target) {
+        if (target < 0 || target > actions) {
+            throw new IndexOutOfBoundsException("No such action: " + target);
+        }
+        if (keyframes == 0) {
+            return engine;
+        }
+
+        // Carry on from the current position if no keyframe is closer
+        var keyframe = findKeyframe(target);
+        var keyframeActions = keyframeActions(keyframe);
+        if (position < keyframeActions || position > target) {
+            var record = buffer.duplicate().position((int) entry(keyframe, 1));
+            record.get(); // KEYFRAME
+            var length = (int) Varint.readUnsigned(record);
+            var state = GameState.read(record.slice(record.position(), length));
+            engine.restoreState(state);
+
+            position = keyframeActions;
+            offset = record.position() + length;
+            time = entry(keyframe, 2);
+        }
+
+        var record = buffer.duplicate().position(offset);
+        while (position < target) {
+            var type = record.get();
+            if (type == ReplayWriter.KEYFRAME) {
+                var length = (int) Varint.readUnsigned(record);
+                record.position(record.position() + length);
+                continue;
+            }
+
+            var action = PlayerAction.fromOrdinal(type);
+            time += Varint.readUnsigned(record);
+            int a = 0;
+            int b = 0;
+            switch (action) {
+                case PLACE -> {
+                    a = (int) Varint.readSigned(record);
+                    b = (int) Varint.readSigned(record);
+                }
+                case ROTATE -> a = (int) Varint.readSigned(record);
+                default -> {
+                }
+            }
+            engine.apply(action, a, b);
+            position++;
+        }
+        offset = record.position();
+
+        return engine;
+    }
+
+    /**
+     * Find the last keyframe at or before the given action, with a binary search of the index
+     *
+     * @param target the number of actions
+     * @return the index of the keyframe
+     */
+    private int findKeyframe(long target) {
+        int low = 0;
+        int high = keyframes - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (keyframeActions(middle) <= target) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the number of actions before a keyframe
+     *
+     * @param keyframe the index of the keyframe
+     * @return the number of actions
+     */
+    private long keyframeActions(int keyframe) {
+        return entry(keyframe, 0);
+    }
+
+    /**
+     * Read a field of an index entry
+     *
+     * @param keyframe the index of the keyframe
+     * @param field    0 for the number of actions, 1 for the offset, 2 for the time of the action
+     *                 before it
+     * @return the value
+     */
+    private long entry(int keyframe, int field) {
+        return buffer.getLong(indexOffset + keyframe * ReplayWriter.INDEX_ENTRY_SIZE
+                + field * Long.BYTES);
+    }
+
+    /**
+     * Get the engine the replay is played on
+     *
+     * @return the engine
+     */
+    public GameEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Get the number of actions applied so far
+     *
+     * @return the position
+     */
+    public long getPosition() {
+        return Math.max(position, 0);
+    }
+
+    /**
+     * Get the time of the last action applied, in microseconds since the recording started
+     *
+     * @return the time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Get the total number of actions in the replay
+     *
+     * @return the number of actions
+     */
+    public long getActionCount() {
+        return actions;
+    }
+
+    /**
+     * Get the number of keyframes in the replay
+     *
+     * @return the number of keyframes
+     */
+    public int getKeyframeCount() {
+        return keyframes;
+    }
+
+    /**
+     * Get the number of actions between keyframes
+     *
+     * @return the interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Get the seed of the recorded game's random number generator
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
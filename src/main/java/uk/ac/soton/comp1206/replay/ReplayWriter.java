@@ -0,0 +1,258 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.PlayerActionListener;
+import uk.ac.soton.comp1206.game.GameEngine;
+import uk.ac.soton.comp1206.game.PlayerAction;
+
+/**
+ * Writes a replay file: every action applied to a game, with a snapshot of the whole game (a
+ * keyframe) every so many actions, and an index of the keyframes at the end of the file.
+ * <p>
+ * The file starts with the bytes {@code TRRP}, a format version, and the seed, columns, rows and
+ * keyframe interval as varints. Then come the records: an action is written as in
+ * {@link InputRecorder}, and a keyframe as the byte {@link #KEYFRAME}, the length of the snapshot as
+ * a varint, and the snapshot itself ({@link uk.ac.soton.comp1206.game.GameState#write}). A keyframe
+ * holds the state before the action that follows it.
+ * <p>
+ * The index has one entry per keyframe of three {@code long}s: the number of actions before it, its
+ * offset in the file and the time of the action before it in microseconds, which is the time of the
+ * state it holds. It is followed by a fixed size footer: the offset
+ * of the index as a {@code long}, the number of keyframes as an {@code int}, the number of actions as
+ * a {@code long} and the bytes {@code TRIX}. See {@link ReplayFile} for reading replays.
+ */
+public class ReplayWriter implements PlayerActionListener, AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ReplayWriter.class);
+
+    /**
+     * The bytes at the start of every replay
+     */
+    static final byte[] MAGIC = "TRRP".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The bytes at the very end of every complete replay
+     */
+    static final byte[] INDEX_MAGIC = "TRIX".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The version of the format written
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The record type of a keyframe. Actions use their ordinal instead.
+     */
+    static final int KEYFRAME = 0x7F;
+
+    /**
+     * The size of each index entry, in bytes
+     */
+    static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES;
+
+    /**
+     * The size of the footer, in bytes
+     */
+    static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + INDEX_MAGIC.length;
+
+    /**
+     * The number of actions between keyframes if none is given
+     */
+    public static final int DEFAULT_INTERVAL = 256;
+
+    private final GameEngine engine;
+    private final int interval;
+    private final CountingOutputStream out;
+
+    private long lastTime;
+    private long actions = 0;
+
+    /**
+     * The time of the last action written, in microseconds: the sum of the times written so far,
+     * so it matches what a reader adds up
+     */
+    private long elapsed = 0;
+
+    /**
+     * The index entries, packed into one array of (actions, offset, time) triples
+     */
+    private long[] index = new long[3 * 64];
+    private int keyframes = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Start writing a replay of the given engine
+     *
+     * @param path     the file to write to
+     * @param engine   the engine being recorded, which keyframes are taken from
+     * @param interval the number of actions between keyframes
+     * @throws IOException if the file cannot be created
+     */
+    public ReplayWriter(Path path, GameEngine engine, int interval) throws IOException {
+        this(Files.newOutputStream(path), engine, interval);
+    }
+
+    /**
+     * Start writing a replay of the given engine
+     *
+     * @param out      the stream to write to, which is closed with the writer
+     * @param engine   the engine being recorded, which keyframes are taken from
+     * @param interval the number of actions between keyframes
+     * @throws IOException if the header cannot be written
+     */
+    public ReplayWriter(OutputStream out, GameEngine engine, int interval) throws IOException {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Keyframe interval must be positive");
+        }
+        this.engine = engine;
+        this.interval = interval;
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, 1 << 16));
+
+        var board = engine.getBoard();
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+        Varint.writeSigned(this.out, engine.getRandom().getSeed());
+        Varint.writeUnsigned(this.out, board.getCols());
+        Varint.writeUnsigned(this.out, board.getRows());
+        Varint.writeUnsigned(this.out, interval);
+
+        lastTime = System.nanoTime();
+    }
+
+    /**
+     * Record an action, writing a keyframe first if one is due. Called before the action is
+     * applied.
+     *
+     * @param action the action
+     * @param a      the first argument
+     * @param b      the second argument
+     */
+    @Override
+    public void onAction(PlayerAction action, int a, int b) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            var now = System.nanoTime();
+            if (actions % interval == 0) {
+                writeKeyframe();
+            }
+
+            var delta = TimeUnit.NANOSECONDS.toMicros(now - lastTime);
+            out.write(action.ordinal());
+            Varint.writeUnsigned(out, delta);
+            lastTime = now;
+            elapsed += delta;
+            switch (action) {
+                case PLACE -> {
+                    Varint.writeSigned(out, a);
+                    Varint.writeSigned(out, b);
+                }
+                case ROTATE -> Varint.writeSigned(out, a);
+                default -> {
+                }
+            }
+            actions++;
+        } catch (IOException e) {
+            logger.error("Failed to write replay", e);
+            closed = true;
+        }
+    }
+
+    /**
+     * Write a snapshot of the engine and add it to the index
+     *
+     * @throws IOException if the stream cannot be written to
+     */
+    private void writeKeyframe() throws IOException {
+        if (3 * keyframes == index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        index[3 * keyframes] = actions;
+        index[3 * keyframes + 1] = out.count;
+        // The snapshot is of the state after the last action, so it has that action's time
+        index[3 * keyframes + 2] = elapsed;
+        keyframes++;
+
+        var snapshot = new ByteArrayOutputStream(256);
+        engine.saveState().write(snapshot);
+
+        out.write(KEYFRAME);
+        Varint.writeUnsigned(out, snapshot.size());
+        snapshot.writeTo(out);
+    }
+
+    /**
+     * Get the number of actions written
+     *
+     * @return the number of actions
+     */
+    public long getActionCount() {
+        return actions;
+    }
+
+    /**
+     * Write the index and footer, and close the file
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            out.close();
+            return;
+        }
+        closed = true;
+
+        var indexOffset = out.count;
+        var data = new DataOutputStream(out);
+        for (int i = 0; i < 3 * keyframes; i++) {
+            data.writeLong(index[i]);
+        }
+        data.writeLong(indexOffset);
+        data.writeInt(keyframes);
+        data.writeLong(actions);
+        data.write(INDEX_MAGIC);
+        data.close();
+
+        logger.info("Wrote replay of {} actions with {} keyframes", actions, keyframes);
+    }
+
+    /**
+     * Keeps track of the number of bytes written, so records' offsets are known
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
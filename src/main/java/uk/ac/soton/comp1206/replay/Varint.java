@@ -0,0 +1,110 @@
+package uk.ac.soton.comp1206.replay;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes variable-length integers. Each byte holds 7 bits of the value, lowest first, with
+ * the top bit set if more bytes follow, so small values take a single byte. Signed values are
+ * zigzag-encoded first, so small negative values are also short.
+ */
+public class Varint {
+
+    private Varint() {
+    }
+
+    /**
+     * Write an unsigned value
+     *
+     * @param out   the stream to write to
+     * @param value the value, treated as unsigned
+     * @throws IOException if the stream cannot be written to
+     */
+    public static void writeUnsigned(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Write a signed value
+     *
+     * @param out   the stream to write to
+     * @param value the value
+     * @throws IOException if the stream cannot be written to
+     */
+    public static void writeSigned(OutputStream out, long value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Read an unsigned value
+     *
+     * @param in the stream to read from
+     * @return the value
+     * @throws IOException if the stream cannot be read, or ends part way through the value
+     */
+    public static long readUnsigned(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ended inside a varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint is too long");
+    }
+
+    /**
+     * Read a signed value
+     *
+     * @param in the stream to read from
+     * @return the value
+     * @throws IOException if the stream cannot be read, or ends part way through the value
+     */
+    public static long readSigned(InputStream in) throws IOException {
+        long value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Read an unsigned value from a buffer, advancing its position
+     *
+     * @param buffer the buffer to read from
+     * @return the value
+     * @throws BufferUnderflowException if the buffer ends part way through the value
+     */
+    public static long readUnsigned(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Varint is too long");
+    }
+
+    /**
+     * Read a signed value from a buffer, advancing its position
+     *
+     * @param buffer the buffer to read from
+     * @return the value
+     * @throws BufferUnderflowException if the buffer ends part way through the value
+     */
+    public static long readSigned(ByteBuffer buffer) {
+        long value = readUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -41,6 +41,7 @@ import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.utils.Colour;
 import uk.ac.soton.comp1206.utils.Multimedia;
+import uk.ac.soton.comp1206.utils.SoundEffects.Priority;
 import uk.ac.soton.comp1206.utils.Vector2;
 
 /**
@@ -50,6 +51,11 @@ import uk.ac.soton.comp1206.utils.Vector2;
 public class ChallengeScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(ChallengeScene.class);
+    /**
+     * The width and height of the board in new challenges, from {@link Game#DEFAULT_SIZE} to
+     * {@link Game#MAX_SIZE}
+     */
+    public static final IntegerProperty boardSize = new SimpleIntegerProperty(Game.DEFAULT_SIZE);
     static boolean disableTimerActions = false;
     /**
      * The current score that is shown on the UI. Used for animating the score
@@ -238,7 +244,7 @@ public class ChallengeScene extends BaseScene {
      * Rotates the current piece clockwise
      */
     protected void rotateCurrentPiece() {
-        Multimedia.playSound("rotate.wav", 0.5);
+        Multimedia.playSound("rotate.wav", 0.5, Priority.LOW);
         game.rotateCurrentPiece();
     }
 
@@ -246,7 +252,7 @@ public class ChallengeScene extends BaseScene {
      * Rotates the current piece counter-clockwise
      */
     protected void rotateCurrentPieceCounterClockwise() {
-        Multimedia.playSound("rotate.wav", 0.5);
+        Multimedia.playSound("rotate.wav", 0.5, Priority.LOW);
         game.rotateCurrentPieceCounterClockwise();
     }
 
@@ -254,7 +260,7 @@ public class ChallengeScene extends BaseScene {
      * Swap the current piece with the next piece
      */
     protected void swapPieces() {
-        Multimedia.playSound("swap.wav", 0.5);
+        Multimedia.playSound("swap.wav", 0.5, Priority.LOW);
         game.swapPieces();
     }
 
@@ -265,7 +271,8 @@ public class ChallengeScene extends BaseScene {
         logger.info("Starting a new challenge");
 
         //Start new game
-        game = new Game(5, 5);
+        var size = boardSize.get();
+        game = new Game(size, size);
         disableTimerActions = Game.USE_INTERNAL_TIMER;
     }
 
@@ -314,7 +321,7 @@ public class ChallengeScene extends BaseScene {
         logger.info("Initialising Challenge");
 
         // Set up event listeners
-        game.setOnLineCleared(s -> board.lineCleared(s, mainPane));
+        game.setOnLinesCleared(cleared -> board.lineCleared(cleared));
         game.setOnPieceBoardUpdate((nextPiece, followingPiece) -> {
             this.currentPieceBoard.setPiece(nextPiece);
             this.nextPieceBoard.setPiece(followingPiece);
@@ -325,7 +332,7 @@ public class ChallengeScene extends BaseScene {
         // Play sound on new level
         game.level.addListener((observable, oldValue, newValue) -> {
             if (newValue.intValue() > oldValue.intValue()) {
-                Multimedia.playSoundDelayed("level.wav", 300, 1, true);
+                Multimedia.playSoundDelayed("level.wav", 300, 1, Priority.HIGH);
             }
         });
 
@@ -9,6 +9,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.component.PieceBoard;
 import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.PieceShape;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.utils.Multimedia;
 
@@ -60,10 +61,11 @@ public class InstructionsScene extends BaseScene {
         pieceGrid.setVgap(10);
         pieceGrid.setAlignment(Pos.CENTER);
         var numColumns = 8;
-        var numRows = GamePiece.PIECES / numColumns + 1;
+        var pieceCount = PieceShape.pieceCount();
+        var numRows = pieceCount / numColumns + 1;
         var boardSize = 60;
 
-        for (int i = 0; i < GamePiece.PIECES; i++) {
+        for (int i = 0; i < pieceCount; i++) {
             var board = new PieceBoard(boardSize, boardSize, false);
             board.setPiece(i);
             pieceGrid.add(board, i % numColumns, i / numColumns);
@@ -3,11 +3,13 @@ package uk.ac.soton.comp1206.scene;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javafx.animation.RotateTransition;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
@@ -15,11 +17,10 @@ import javafx.beans.property.StringProperty;
 import javafx.geometry.HPos;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
-import javafx.scene.control.ScrollPane.ScrollBarPolicy;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
@@ -37,6 +38,7 @@ import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.LobbyScene.ChatWindow.Message.MessageType;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.utils.Colour;
+import uk.ac.soton.comp1206.utils.RingBufferList;
 
 public class LobbyScene extends BaseScene {
 
@@ -286,11 +288,30 @@ public class LobbyScene extends BaseScene {
 
     public class ChatWindow extends BorderPane {
 
+        /**
+         * The number of messages kept in the chat history. Older messages are dropped.
+         */
+        private static final int HISTORY_LENGTH = 500;
+
         public final StringProperty username = new SimpleStringProperty(
                 (System.getProperty("user.name")));
-        private final GridPane messageGrid;
-        private final List<Message> messages = new ArrayList<>();
-        private final ScrollPane chatBox;
+        /**
+         * The chat history, newest last
+         */
+        private final RingBufferList<Message> messages = new RingBufferList<>(HISTORY_LENGTH);
+        /**
+         * Messages waiting to be added to the history on the next pulse. Messages can arrive on
+         * any thread.
+         */
+        private final Queue<Message> pendingMessages = new ConcurrentLinkedQueue<>();
+        /**
+         * Whether the pending messages have been scheduled to be added
+         */
+        private final AtomicBoolean messagesScheduled = new AtomicBoolean(false);
+        /**
+         * The view of the history, which only creates rows for the messages on screen
+         */
+        private final ListView<Message> chatBox;
         private final TextFlow userList;
         private final TextField textField;
         private final Button startButton;
@@ -347,43 +368,12 @@ public class LobbyScene extends BaseScene {
             clearUserList();
             this.setTop(userList);
 
-            chatBox = new ScrollPane();
+            chatBox = new ListView<>(messages);
             chatBox.setPadding(new Insets(10, 0, 10, 0));
             chatBox.getStyleClass().add("messages");
-            chatBox.getStyleClass().add("scroller");
-            chatBox.setFitToWidth(true);
-            chatBox.setFitToHeight(true);
-            chatBox.setHbarPolicy(ScrollBarPolicy.NEVER);
-            chatBox.setVbarPolicy(ScrollBarPolicy.NEVER);
-            chatBox.vvalueProperty().addListener((ob, o, n) -> {
-                if (n.floatValue() == 1.0f) {
-                    return;
-                }
-                chatBox.setVvalue(1.0f);
-            });
-
-            this.messageGrid = new GridPane();
-            messageGrid.getStyleClass().add("messages");
-            messageGrid.setVgap(5);
-            messageGrid.setHgap(5);
-
-            ColumnConstraints usernameColumn = new ColumnConstraints();
-            usernameColumn.setPercentWidth(20);
-            usernameColumn.setHalignment(HPos.RIGHT);
-
-            ColumnConstraints separatorColumn = new ColumnConstraints();
-
-            ColumnConstraints messageColumn = new ColumnConstraints();
-            messageColumn.setHgrow(Priority.ALWAYS);
-
-            ColumnConstraints timeStampColumn = new ColumnConstraints();
-            timeStampColumn.setPercentWidth(14);
-            timeStampColumn.setHalignment(HPos.RIGHT);
-
-            messageGrid.getColumnConstraints()
-                    .addAll(usernameColumn, separatorColumn, messageColumn, timeStampColumn);
-
-            chatBox.setContent(messageGrid);
+            chatBox.getStyleClass().add("chat-history");
+            chatBox.setFocusTraversable(false);
+            chatBox.setCellFactory(list -> new MessageCell());
             this.setCenter(chatBox);
 
             HBox buttonBar = new HBox();
@@ -471,56 +461,37 @@ public class LobbyScene extends BaseScene {
         }
 
         /**
-         * Displays a message in the chat box
+         * Displays a message in the chat box. Can be called from any thread; the messages received
+         * before the next pulse are all added at once.
          *
          * @param message The message to add
          */
         public void addMessage(Message message) {
             logger.info(Colour.green("Adding message: " + message.toString()));
 
-            int row = messages.size();
-            messages.add(message);
-
-            var username = new Label(message.sender);
-            username.setStyle(message.getUserStyle());
-
-            var separator = new Label("| ");
-            separator.setStyle("-fx-text-fill: #808080");
-
-            var content = new Label(message.content);
-            content.setStyle("-fx-text-fill: white;");
-            if (message.type == MessageType.SYSTEM) {
-                content.setStyle("-fx-text-fill: #C0C0C0;");
-            } else if (message.type == MessageType.ERROR) {
-                content.setStyle("-fx-text-fill: #FF4040;");
-            }
-            content.setWrapText(true);
-            GridPane.setHgrow(content, Priority.ALWAYS);
-
-            var timeStamp = new Label(message.timeStamp);
-            timeStamp.setStyle("-fx-text-fill: #808080");
-
-            if (!Platform.isFxApplicationThread()) {
-                Platform.runLater(() -> {
-                    addRow(username, separator, content, timeStamp);
-                    jumpToBottom();
-                });
-            } else {
-                addRow(username, separator, content, timeStamp);
-                jumpToBottom();
+            pendingMessages.add(message);
+            if (messagesScheduled.compareAndSet(false, true)) {
+                Platform.runLater(this::addPendingMessages);
             }
         }
 
         /**
-         * Adds a row to the message grid
-         *
-         * @param nodes The nodes to add to the row
+         * Add every pending message to the history as one update, and scroll to the newest
          */
-        private void addRow(Node... nodes) {
-            int row = messageGrid.getRowCount();
-            for (int i = 0; i < nodes.length; i++) {
-                messageGrid.add(nodes[i], i, row);
+        private void addPendingMessages() {
+            messagesScheduled.set(false);
+
+            var batch = new ArrayList<Message>();
+            Message message;
+            while ((message = pendingMessages.poll()) != null) {
+                batch.add(message);
+            }
+            if (batch.isEmpty()) {
+                return;
             }
+
+            messages.addAll(batch);
+            jumpToBottom();
         }
 
         /**
@@ -671,7 +642,7 @@ public class LobbyScene extends BaseScene {
                     rotateTransition.play();
                 }
                 case "clear" -> {
-                    messageGrid.getChildren().clear();
+                    pendingMessages.clear();
                     messages.clear();
                 }
                 default -> addSystemMessage("Unknown command /" + command);
@@ -721,8 +692,7 @@ public class LobbyScene extends BaseScene {
          * Scrolls the chat box to the bottom
          */
         private void jumpToBottom() {
-            chatBox.layout();
-            Platform.runLater(() -> chatBox.setVvalue(1.0f));
+            chatBox.scrollTo(messages.size() - 1);
         }
 
         /**
@@ -734,6 +704,85 @@ public class LobbyScene extends BaseScene {
         }
 
 
+        /**
+         * A row of the chat box. The view only creates enough of these to fill the screen, and
+         * reuses them for whichever messages are showing.
+         */
+        private class MessageCell extends ListCell<Message> {
+
+            private final GridPane row = new GridPane();
+            private final Label username = new Label();
+            private final Label separator = new Label("| ");
+            private final Label content = new Label();
+            private final Label timeStamp = new Label();
+
+            /**
+             * Create an empty row
+             */
+            MessageCell() {
+                row.setHgap(5);
+
+                ColumnConstraints usernameColumn = new ColumnConstraints();
+                usernameColumn.setPercentWidth(20);
+                usernameColumn.setHalignment(HPos.RIGHT);
+
+                ColumnConstraints separatorColumn = new ColumnConstraints();
+
+                ColumnConstraints messageColumn = new ColumnConstraints();
+                messageColumn.setHgrow(Priority.ALWAYS);
+
+                ColumnConstraints timeStampColumn = new ColumnConstraints();
+                timeStampColumn.setPercentWidth(14);
+                timeStampColumn.setHalignment(HPos.RIGHT);
+
+                row.getColumnConstraints()
+                        .addAll(usernameColumn, separatorColumn, messageColumn, timeStampColumn);
+
+                separator.setStyle("-fx-text-fill: #808080");
+                timeStamp.setStyle("-fx-text-fill: #808080");
+                content.setWrapText(true);
+                GridPane.setHgrow(content, Priority.ALWAYS);
+
+                row.addRow(0, username, separator, content, timeStamp);
+
+                // Wrap the messages to the width of the chat box, rather than scrolling sideways
+                row.setMinWidth(0);
+                row.prefWidthProperty().bind(chatBox.widthProperty().subtract(20));
+            }
+
+            /**
+             * Show a message in this row
+             *
+             * @param message the message, or {@code null} if the row is empty
+             * @param empty   whether the row is empty
+             */
+            @Override
+            protected void updateItem(Message message, boolean empty) {
+                super.updateItem(message, empty);
+
+                if (empty || message == null) {
+                    setGraphic(null);
+                    return;
+                }
+
+                username.setText(message.sender);
+                username.setStyle(message.getUserStyle());
+
+                content.setText(message.content);
+                if (message.type == MessageType.SYSTEM) {
+                    content.setStyle("-fx-text-fill: #C0C0C0;");
+                } else if (message.type == MessageType.ERROR) {
+                    content.setStyle("-fx-text-fill: #FF4040;");
+                } else {
+                    content.setStyle("-fx-text-fill: white;");
+                }
+
+                timeStamp.setText(message.timeStamp);
+
+                setGraphic(row);
+            }
+        }
+
         /**
          * Represents any message that can be displayed in the chat box
          */
@@ -3,6 +3,7 @@ package uk.ac.soton.comp1206.scene;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import javafx.animation.Animation;
 import javafx.animation.FadeTransition;
 import javafx.animation.Interpolator;
@@ -392,11 +393,14 @@ public class MenuScene extends BaseScene {
     }
 
     /**
-     * Exit the game
+     * Exit the game, once the QUIT message has been written or a short time has passed. The wait
+     * happens off the FX thread.
      */
     private void exit() {
-        gameWindow.getCommunicator().send("QUIT");
-        gameWindow.exitGame();
+        var communicator = gameWindow.getCommunicator();
+        communicator.send("QUIT");
+        CompletableFuture.runAsync(communicator::flush)
+                .thenRunAsync(gameWindow::exitGame, Platform::runLater);
     }
 
     /**
@@ -377,65 +377,44 @@ public class ScoresScene extends BaseScene {
 
         /**
          * {@inheritDoc}
+         * <p>
+         * A new score is shown with a text field, so the player can enter their name.
          */
         @Override
-        public void rebuild() {
-            if (frozen) {
-                return;
+        protected Node[] createNodes(Score score) {
+            Node username = new Label(score.username);
+            username.getStyleClass().add("scores-item");
+            var separator = new Label(":");
+            separator.getStyleClass().add("scores-item");
+            var scoreLabel = new Label(Integer.toString(score.score));
+            scoreLabel.getStyleClass().add("scores-item");
+
+            if (score.type == ScoreType.NEWSCORE) {
+                final var usernameField = new TextField();
+                usernameField.setPromptText("ENTER NAME:");
+                usernameField.setAlignment(Pos.CENTER_RIGHT);
+                username = usernameField;
+                usernameField.setOnAction((event) -> {
+                    score.username = usernameField.getText();
+                    score.type = ScoreType.MYSCORE;
+                    onNameEntered();
+                });
+
+                usernameField.textProperty().bindBidirectional(score.usernameProperty);
+
+                username.getStyleClass().add("score-entry-box");
+                username.getStyleClass().add("my-score");
+                separator.getStyleClass().add("my-score");
+                scoreLabel.getStyleClass().add("my-score");
             }
 
-            logger.info("Rebuilding scores list");
-
-            var sortedScores = scores.stream()
-                    .sorted(scoreComparator)
-                    .limit(MAX_LIST_LENGTH)
-                    .toList();
-
-            getChildren().clear();
-
-            sortedScores.forEach((score) -> {
-                Node username = new Label(score.username);
-                username.getStyleClass().add("scores-item");
-                var separator = new Label(":");
-                separator.getStyleClass().add("scores-item");
-                var scoreLabel = new Label(Integer.toString(score.score));
-                scoreLabel.getStyleClass().add("scores-item");
-
-                if (score.type == ScoreType.NEWSCORE) {
-                    final var usernameField = new TextField();
-                    usernameField.setPromptText("ENTER NAME:");
-                    usernameField.setAlignment(Pos.CENTER_RIGHT);
-                    username = usernameField;
-                    usernameField.setOnAction((event) -> {
-                        score.username = usernameField.getText();
-                        score.type = ScoreType.MYSCORE;
-                        onNameEntered();
-                    });
-
-                    usernameField.textProperty().bindBidirectional(score.usernameProperty);
-
-                    username.getStyleClass().add("score-entry-box");
-                    username.getStyleClass().add("my-score");
-                    separator.getStyleClass().add("my-score");
-                    scoreLabel.getStyleClass().add("my-score");
-                }
-
-                if (score.type == ScoreType.MYSCORE) {
-                    username.getStyleClass().add("my-score");
-                    separator.getStyleClass().add("my-score");
-                    scoreLabel.getStyleClass().add("my-score");
-                }
-
-                score.nodes = new Node[]{username, separator, scoreLabel};
-
-                var row = this.getRowCount();
-
-                add(username, 0, row);
-                add(separator, 1, row);
-                add(scoreLabel, 2, row);
-            });
+            if (score.type == ScoreType.MYSCORE) {
+                username.getStyleClass().add("my-score");
+                separator.getStyleClass().add("my-score");
+                scoreLabel.getStyleClass().add("my-score");
+            }
 
-            layout();
+            return new Node[]{username, separator, scoreLabel};
         }
 
 
@@ -443,8 +422,7 @@ public class ScoresScene extends BaseScene {
          * Saves the current list of scores to {@code scores.txt}.
          */
         void save() {
-            saveScores(scores.stream()
-                    .sorted(scoreComparator)
+            saveScores(ranked()
                     .map(Score::toString)
                     .toList());
         }
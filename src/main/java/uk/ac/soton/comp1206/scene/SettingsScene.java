@@ -9,11 +9,12 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Game;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.utils.Multimedia;
 
 /**
- * The settings menu, currently only has volume controls
+ * The settings menu, with volume controls and the board size for challenges
  */
 public class SettingsScene extends BaseScene {
 
@@ -81,6 +82,23 @@ public class SettingsScene extends BaseScene {
         sfxVolumeNumber.getStyleClass().add("heading");
         sfxVolumeNumber.textProperty().bind(sfxVolumeSlider.valueProperty().asString("%.0f"));
 
+        // board size
+        var boardSizeSlider = new Slider(Game.DEFAULT_SIZE, Game.MAX_SIZE,
+                ChallengeScene.boardSize.get());
+        boardSizeSlider.setMajorTickUnit(1);
+        boardSizeSlider.setMinorTickCount(0);
+        boardSizeSlider.setSnapToTicks(true);
+        // Set rather than bind, so the static property doesn't keep this scene alive
+        boardSizeSlider.valueProperty().addListener((observable, oldValue, newValue) ->
+                ChallengeScene.boardSize.set(newValue.intValue()));
+
+        var boardSizeLabel = new Label("Board Size");
+        boardSizeLabel.getStyleClass().add("heading");
+
+        var boardSizeNumber = new Label();
+        boardSizeNumber.getStyleClass().add("heading");
+        boardSizeNumber.textProperty().bind(ChallengeScene.boardSize.asString());
+
         GridPane settingsGrid = new GridPane();
         settingsGrid.setHgap(10);
         settingsGrid.setAlignment(Pos.CENTER);
@@ -94,6 +112,9 @@ public class SettingsScene extends BaseScene {
         settingsGrid.add(sfxVolumeLabel, 0, 2);
         settingsGrid.add(sfxVolumeSlider, 1, 2);
         settingsGrid.add(sfxVolumeNumber, 2, 2);
+        settingsGrid.add(boardSizeLabel, 0, 3);
+        settingsGrid.add(boardSizeSlider, 1, 3);
+        settingsGrid.add(boardSizeNumber, 2, 3);
 
         mainPane.setCenter(settingsGrid);
     }
@@ -1,11 +1,15 @@
 package uk.ac.soton.comp1206.scene;
 
+import java.util.concurrent.TimeUnit;
 import javafx.animation.FadeTransition;
 import javafx.animation.Interpolator;
 import javafx.animation.ScaleTransition;
+import javafx.application.Platform;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
 import uk.ac.soton.comp1206.App;
 import uk.ac.soton.comp1206.ui.GamePane;
@@ -22,6 +26,11 @@ public class SplashScene extends BaseScene {
      */
     private boolean isExiting = false;
 
+    /**
+     * The longest to wait for the startup tasks once the animation has finished, in seconds
+     */
+    private static final long MAX_STARTUP_WAIT = 5;
+
     /**
      * Create a new scene, passing in the GameWindow the scene will be displayed in
      *
@@ -49,6 +58,28 @@ public class SplashScene extends BaseScene {
     public void initialise() {
     }
 
+    /**
+     * Show the progress of the startup tasks along the bottom of the screen
+     *
+     * @param pane the pane to show it in
+     */
+    private void showProgress(BorderPane pane) {
+        var progressBar = new Rectangle(0, 3, Color.WHITE);
+        progressBar.setOpacity(0.5);
+        progressBar.widthProperty().bind(
+                gameWindow.getStartup().progressProperty().multiply(gameWindow.getWidth()));
+        pane.setBottom(progressBar);
+    }
+
+    /**
+     * Move on to the menu once the startup tasks have finished, or have taken too long
+     */
+    private void startMenuWhenReady() {
+        gameWindow.getStartup().whenFinished()
+                .completeOnTimeout(null, MAX_STARTUP_WAIT, TimeUnit.SECONDS)
+                .thenRun(() -> Platform.runLater(gameWindow::startMenu));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -102,7 +133,8 @@ public class SplashScene extends BaseScene {
             fadeOutAnim.setOnFinished((e) -> App.getInstance().shutdown());
 
         } else {
-            fadeOutAnim.setOnFinished((e) -> gameWindow.startMenu());
+            showProgress(mainPane);
+            fadeOutAnim.setOnFinished((e) -> startMenuWhenReady());
         }
 
         if (!isExiting) {
@@ -1,5 +1,7 @@
 package uk.ac.soton.comp1206.ui;
 
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.layout.Pane;
@@ -9,7 +11,10 @@ import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.App;
+import uk.ac.soton.comp1206.component.BlockSprites;
 import uk.ac.soton.comp1206.component.ScoresList;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.PieceShape;
 import uk.ac.soton.comp1206.network.Communicator;
 import uk.ac.soton.comp1206.scene.BaseScene;
 import uk.ac.soton.comp1206.scene.ChallengeScene;
@@ -20,6 +25,10 @@ import uk.ac.soton.comp1206.scene.MultiplayerScene;
 import uk.ac.soton.comp1206.scene.ScoresScene;
 import uk.ac.soton.comp1206.scene.SettingsScene;
 import uk.ac.soton.comp1206.scene.SplashScene;
+import uk.ac.soton.comp1206.utils.ImageCache;
+import uk.ac.soton.comp1206.utils.Multimedia;
+import uk.ac.soton.comp1206.utils.SoundEffects;
+import uk.ac.soton.comp1206.utils.StartupTasks;
 
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between
@@ -34,7 +43,15 @@ public class GameWindow {
 
     private static final boolean SHOW_SPLASH_SCREEN = true;
     private static final boolean SHOW_EXIT_SPLASH = true;
+    /**
+     * The music to load while the splash screen plays
+     */
+    private static final String[] MUSIC = {"menu.mp3", "game_start.wav", "game.wav", "end.wav"};
     final Communicator communicator;
+    /**
+     * Loads the assets while the splash screen plays
+     */
+    private final StartupTasks startup = new StartupTasks();
     private final int width;
     private final int height;
     private final Stage stage;
@@ -57,15 +74,16 @@ public class GameWindow {
         //Setup window
         setupStage();
 
+        //Setup communicator, which connects in the background
+        communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+        communicator.connect();
+
         //Setup resources
         setupResources();
 
         //Setup default scene
         setupDefaultScene();
 
-        //Setup communicator
-        communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
-
         //Load first scene
         if (SHOW_SPLASH_SCREEN) {
             loadScene(new SplashScene(this));
@@ -75,13 +93,42 @@ public class GameWindow {
     }
 
     /**
-     * Setup the font and any other resources we need
+     * Start loading the font and any other resources we need, all in parallel
      */
     private void setupResources() {
         logger.info("Loading resources");
 
         //We need to load fonts here due to the Font loader bug with spaces in URLs in the CSS files
-        Font.loadFont(getClass().getResourceAsStream("/style/manaspace.ttf"), 32);
+        startup.add("Font",
+                () -> Font.loadFont(getClass().getResourceAsStream("/style/manaspace.ttf"), 32));
+
+        startup.addAsync("Images", ImageCache::preload);
+        startup.addAsync("Sounds", SoundEffects::preload);
+        startup.add("Music", () -> Multimedia.preloadMusic(MUSIC));
+        startup.addAsync("Block sprites", this::preloadSprites);
+    }
+
+    /**
+     * Start building the block images at the sizes the game scenes draw them at, so they are ready
+     * by the time a game starts
+     *
+     * @return completes once every size is built
+     */
+    private CompletableFuture<Void> preloadSprites() {
+        double pieceSize = PieceShape.maxPieceSize();
+        double[] blockSizes = {
+                width / 2.0 / ChallengeScene.boardSize.get(), // challenge board
+                width / 2.5 / Game.DEFAULT_SIZE, // multiplayer board
+                width * .13 / Game.DEFAULT_SIZE, // opponent boards
+                width * .25 / pieceSize, // piece boards
+                width * .15 / pieceSize,
+                width * .1 / pieceSize,
+                60 / pieceSize, // instructions
+        };
+
+        return CompletableFuture.allOf(Arrays.stream(blockSizes)
+                .mapToObj(blockSize -> BlockSprites.preload(BlockSprites.pixelSize(blockSize)))
+                .toArray(CompletableFuture[]::new));
     }
 
     /**
@@ -240,6 +287,15 @@ public class GameWindow {
         return this.height;
     }
 
+    /**
+     * Get the tasks run when the game starts, to show their progress or wait for them
+     *
+     * @return the startup tasks
+     */
+    public StartupTasks getStartup() {
+        return startup;
+    }
+
     /**
      * Get the communicator
      *
@@ -0,0 +1,256 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single scheduler thread shared by every game, for running tasks after a delay.
+ * <p>
+ * Each task is represented by a {@link Deadline}, which can be cancelled, restarted with a new
+ * delay, or sped up and slowed down while it is running, all without creating any new threads.
+ * Times are measured with {@link System#nanoTime()}, so they are not affected by changes to the
+ * system clock.
+ * <p>
+ * Tasks are run on the scheduler thread, so they should be short; anything that touches the UI
+ * should be passed on with {@code Platform.runLater}.
+ */
+public final class GameScheduler {
+
+    private static final Logger logger = LogManager.getLogger(GameScheduler.class);
+
+    /**
+     * The executor running every deadline. It only needs one thread, since the tasks just hand the
+     * work on elsewhere.
+     */
+    private static final ScheduledThreadPoolExecutor executor = createExecutor();
+
+    private GameScheduler() {
+    }
+
+    /**
+     * Create the shared executor
+     *
+     * @return the executor
+     */
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        var executor = new ScheduledThreadPoolExecutor(1, task -> {
+            var thread = new Thread(task, "Game scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Deadlines are cancelled and restarted all the time, so don't keep the cancelled ones
+        // queued until they would have run
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Create a deadline that runs the given task once the delay has passed
+     *
+     * @param task  the task to run
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return the started deadline
+     */
+    public static Deadline schedule(Runnable task, long delay, TimeUnit unit) {
+        var deadline = new Deadline(task);
+        deadline.restart(delay, unit);
+        return deadline;
+    }
+
+    /**
+     * A task that runs once its time is up. The time can be restarted, cancelled, or made to pass
+     * faster or slower.
+     * <p>
+     * The time left is tracked as an amount of work, in nanoseconds at normal speed, and each
+     * change of speed uses up the work done so far before working out the new expiry time. Speeding
+     * up and then slowing down again therefore gives exactly the original deadline, rather than
+     * gaining or losing time to rounding each time.
+     */
+    public static final class Deadline {
+
+        /**
+         * The task to run when the deadline expires
+         */
+        private final Runnable task;
+
+        /**
+         * The scheduled run of the task, or {@code null} if there isn't one
+         */
+        private ScheduledFuture<?> future;
+
+        /**
+         * The time the speed last changed, or the deadline was last restarted
+         */
+        private long since;
+
+        /**
+         * The work left at {@link #since}, in nanoseconds at normal speed
+         */
+        private long work;
+
+        /**
+         * How many times faster than normal the time is passing
+         */
+        private int speed = 1;
+
+        /**
+         * Incremented every time the deadline is restarted or cancelled, so a run that was already
+         * on its way when that happened can tell it is out of date
+         */
+        private long generation = 0;
+
+        /**
+         * Whether the task has run since the deadline was last restarted
+         */
+        private boolean expired = false;
+
+        /**
+         * Create a deadline that is not yet running
+         *
+         * @param task the task to run
+         */
+        public Deadline(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Start the deadline again with a new delay, at normal speed. Any run already scheduled is
+         * cancelled.
+         *
+         * @param delay the delay
+         * @param unit  the unit of the delay
+         */
+        public synchronized void restart(long delay, TimeUnit unit) {
+            cancelRun();
+            expired = false;
+            speed = 1;
+            since = System.nanoTime();
+            work = Math.max(unit.toNanos(delay), 0);
+            scheduleRun();
+        }
+
+        /**
+         * Stop the deadline without running the task
+         */
+        public synchronized void cancel() {
+            cancelRun();
+            work = 0;
+        }
+
+        /**
+         * Change how fast the time passes. The work already done at the old speed is kept.
+         *
+         * @param speed how many times faster than normal to count down, at least 1
+         */
+        public synchronized void setSpeed(int speed) {
+            if (speed < 1) {
+                throw new IllegalArgumentException("Speed must be at least 1");
+            }
+            if (speed == this.speed) {
+                return;
+            }
+            if (future == null) {
+                // Not running, so there is no work to carry over
+                this.speed = speed;
+                return;
+            }
+
+            cancelRun();
+            var now = System.nanoTime();
+            work = Math.max(work - (now - since) * this.speed, 0);
+            since = now;
+            this.speed = speed;
+            scheduleRun();
+        }
+
+        /**
+         * Get the current speed
+         *
+         * @return how many times faster than normal the time is passing
+         */
+        public synchronized int getSpeed() {
+            return speed;
+        }
+
+        /**
+         * Get the time left until the task runs, at the current speed
+         *
+         * @param unit the unit to return the time in
+         * @return the time left, or 0 if the deadline is not running
+         */
+        public synchronized long getRemaining(TimeUnit unit) {
+            if (future == null) {
+                return 0;
+            }
+            var left = Math.max(work - (System.nanoTime() - since) * speed, 0);
+            return unit.convert(ceilDiv(left, speed), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Check if the task has run since the deadline was last restarted
+         *
+         * @return {@code true} if the deadline has expired
+         */
+        public synchronized boolean hasExpired() {
+            return expired;
+        }
+
+        /**
+         * Schedule the task for when the remaining work runs out at the current speed
+         */
+        private void scheduleRun() {
+            var runGeneration = generation;
+            future = executor.schedule(() -> run(runGeneration), ceilDiv(work, speed),
+                    TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Cancel the scheduled run, if there is one
+         */
+        private void cancelRun() {
+            generation++;
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+
+        /**
+         * Run the task, unless the deadline has been changed since this run was scheduled
+         *
+         * @param runGeneration the generation the run was scheduled in
+         */
+        private void run(long runGeneration) {
+            synchronized (this) {
+                if (runGeneration != generation) {
+                    return;
+                }
+                future = null;
+                work = 0;
+                expired = true;
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Keep the scheduler thread alive for every other game
+                logger.error("Scheduled task failed", e);
+            }
+        }
+
+        /**
+         * Divide, rounding up
+         *
+         * @param a the dividend, not negative
+         * @param b the divisor, positive
+         * @return the rounded up quotient
+         */
+        private static long ceilDiv(long a, long b) {
+            return (a + b - 1) / b;
+        }
+    }
+}
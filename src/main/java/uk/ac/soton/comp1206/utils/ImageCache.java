@@ -0,0 +1,354 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.scene.image.Image;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A cache of the images loaded from the images folder, so each image is only decoded once at each
+ * size.
+ * <p>
+ * Images are held by soft references, so the garbage collector can take them back if memory runs
+ * short, and the least recently used images are dropped once the decoded images add up to more
+ * than {@link #BUDGET} bytes.
+ * <p>
+ * Nothing is decoded on the calling thread. {@link #get} returns an image that loads in the
+ * background if it isn't cached yet, and {@link #load} and {@link #preload} decode on a pool of
+ * worker threads. The images listed in {@link #MANIFEST} can be preloaded while the splash screen
+ * is showing.
+ */
+public final class ImageCache {
+
+    private static final Logger logger = LogManager.getLogger(ImageCache.class);
+
+    private static final String IMAGE_PATH = "/images/";
+
+    /**
+     * The list of images to preload, one per line, as {@code filename [width height]}. Lines
+     * starting with {@code #} are ignored.
+     */
+    private static final String MANIFEST = "/misc/preload-images.txt";
+
+    /**
+     * The most memory the decoded images should take up, in bytes
+     */
+    private static final long BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * The cached images, least recently used first
+     */
+    private static final LinkedHashMap<Key, SoftReference<Image>> images =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The images being decoded on the worker threads
+     */
+    private static final Map<Key, CompletableFuture<Image>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * The threads that decode images
+     */
+    private static final ExecutorService workers = Executors.newFixedThreadPool(2, task -> {
+        var thread = new Thread(task, "Image loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ImageCache() {
+    }
+
+    /**
+     * Identifies an image at one size
+     *
+     * @param filename the name of the file in the images folder
+     * @param width    the width to load the image at, or 0 for its own size
+     * @param height   the height to load the image at, or 0 for its own size
+     * @param smooth   whether to use a better quality filter when scaling the image
+     */
+    public record Key(String filename, int width, int height, boolean smooth) {
+
+        /**
+         * Get the location of the image
+         *
+         * @return the URL of the image
+         * @throws NullPointerException if the file is not found
+         */
+        private URL url() throws NullPointerException {
+            return Objects.requireNonNull(ImageCache.class.getResource(IMAGE_PATH + filename),
+                    "Image not found: " + filename);
+        }
+
+        /**
+         * Create the image, keeping its aspect ratio if a size is given
+         *
+         * @param background whether to load the image in the background
+         * @return the image
+         * @throws NullPointerException if the file is not found
+         */
+        private Image create(boolean background) throws NullPointerException {
+            return new Image(url().toExternalForm(), width, height, width > 0 || height > 0,
+                    smooth, background);
+        }
+    }
+
+    /**
+     * Get an image. If it isn't cached, it is returned straight away and loads in the background,
+     * showing once it is ready.
+     *
+     * @param key the image to get
+     * @return the image
+     * @throws NullPointerException if the file is not found
+     */
+    public static Image get(Key key) throws NullPointerException {
+        var image = cached(key);
+        if (image != null) {
+            return image;
+        }
+
+        var created = key.create(true);
+        put(key, created);
+
+        // The image takes no space until it has loaded, so check the budget again once it has
+        whenLoaded(created).whenComplete((loaded, error) -> {
+            if (error != null) {
+                remove(key, created);
+            } else {
+                trim();
+            }
+        });
+        return created;
+    }
+
+    /**
+     * Get an image once it has been fully decoded, decoding it on a worker thread if necessary
+     *
+     * @param key the image to get
+     * @return the image, once it is decoded. Completes exceptionally if the file is not found or
+     * can't be decoded.
+     */
+    public static CompletableFuture<Image> load(Key key) {
+        var image = cached(key);
+        if (image != null && !image.isError() && image.getProgress() >= 1) {
+            return CompletableFuture.completedFuture(image);
+        }
+
+        var future = loading.computeIfAbsent(key, k -> {
+            if (image != null && !image.isError()) {
+                // Being loaded in the background by get(), so wait for that rather than decoding
+                // it again
+                return whenLoaded(image);
+            }
+            return CompletableFuture.supplyAsync(() -> {
+                var decoded = k.create(false);
+                if (decoded.isError()) {
+                    throw new IllegalStateException("Could not decode " + k.filename(),
+                            decoded.getException());
+                }
+                put(k, decoded);
+                return decoded;
+            }, workers);
+        });
+
+        // Added outside computeIfAbsent, since the future may already be complete
+        future.whenComplete((result, error) -> loading.remove(key, future));
+        return future;
+    }
+
+    /**
+     * Decode every image in the preload manifest
+     *
+     * @return completes once every image is decoded
+     */
+    public static CompletableFuture<Void> preload() {
+        var start = System.nanoTime();
+        var keys = readManifest();
+        var futures = keys.stream()
+                .map(key -> load(key).exceptionally(e -> {
+                    logger.error("Could not preload " + key.filename() + ": " + e.getMessage());
+                    return null;
+                }))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(futures).thenRun(() -> logger.info(Colour.purple(
+                "Preloaded " + keys.size() + " images in " + (System.nanoTime() - start) / 1000000
+                        + "ms")));
+    }
+
+    /**
+     * Wait for an image to finish loading in the background. Completes on the FX thread.
+     *
+     * @param image the image
+     * @return the image, once it has loaded. Completes exceptionally if it can't be loaded.
+     */
+    private static CompletableFuture<Image> whenLoaded(Image image) {
+        var future = new CompletableFuture<Image>();
+        var check = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                if (image.isError()) {
+                    future.completeExceptionally(new IllegalStateException("Could not load image",
+                            image.getException()));
+                } else if (image.getProgress() >= 1) {
+                    future.complete(image);
+                } else {
+                    return;
+                }
+                image.progressProperty().removeListener(this);
+                image.errorProperty().removeListener(this);
+            }
+        };
+
+        // The image reports its progress on the FX thread, so listen there. Listen before checking,
+        // so finishing in between isn't missed.
+        Runnable listen = () -> {
+            image.progressProperty().addListener(check);
+            image.errorProperty().addListener(check);
+            check.invalidated(null);
+        };
+        if (Platform.isFxApplicationThread()) {
+            listen.run();
+        } else {
+            Platform.runLater(listen);
+        }
+        return future;
+    }
+
+    /**
+     * Look up an image in the cache
+     *
+     * @param key the image to look up
+     * @return the image, or {@code null} if it isn't cached
+     */
+    private static synchronized Image cached(Key key) {
+        var reference = images.get(key);
+        if (reference == null) {
+            return null;
+        }
+
+        var image = reference.get();
+        if (image == null) {
+            // Taken back by the garbage collector
+            images.remove(key);
+        }
+        return image;
+    }
+
+    /**
+     * Add an image to the cache, then drop the least recently used images if it is over budget
+     *
+     * @param key   the image
+     * @param image the decoded image
+     */
+    private static synchronized void put(Key key, Image image) {
+        images.put(key, new SoftReference<>(image));
+        trim();
+    }
+
+    /**
+     * Remove an image from the cache, if it is still the one cached for its key
+     *
+     * @param key   the image
+     * @param image the image that was cached
+     */
+    private static synchronized void remove(Key key, Image image) {
+        var reference = images.get(key);
+        if (reference != null && reference.get() == image) {
+            images.remove(key);
+        }
+    }
+
+    /**
+     * Drop the least recently used images until the cache is within budget
+     */
+    private static synchronized void trim() {
+        long total = 0;
+        for (var reference : images.values()) {
+            total += size(reference.get());
+        }
+
+        // Always keep the newest image, even if it is over budget on its own
+        Iterator<Map.Entry<Key, SoftReference<Image>>> iterator = images.entrySet().iterator();
+        while (total > BUDGET && images.size() > 1) {
+            var eldest = iterator.next();
+            total -= size(eldest.getValue().get());
+            iterator.remove();
+            logger.debug("Dropped image from cache: " + eldest.getKey());
+        }
+    }
+
+    /**
+     * Estimate the memory used by a decoded image
+     *
+     * @param image the image, or {@code null}
+     * @return the size in bytes, or 0 if the image hasn't loaded
+     */
+    private static long size(Image image) {
+        if (image == null) {
+            return 0;
+        }
+        return (long) image.getWidth() * (long) image.getHeight() * 4;
+    }
+
+    /**
+     * Read the preload manifest
+     *
+     * @return the images to preload
+     */
+    private static List<Key> readManifest() {
+        var keys = new ArrayList<Key>();
+        var stream = ImageCache.class.getResourceAsStream(MANIFEST);
+        if (stream == null) {
+            logger.warn("No image preload manifest found");
+            return keys;
+        }
+
+        try (var reader = new BufferedReader(
+                new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                var parts = line.split("\\s+");
+                try {
+                    if (parts.length == 1) {
+                        keys.add(Multimedia.imageKey(parts[0]));
+                    } else if (parts.length == 3) {
+                        keys.add(Multimedia.imageKey(parts[0], Integer.parseInt(parts[1]),
+                                Integer.parseInt(parts[2])));
+                    } else {
+                        logger.error("Bad line in image manifest, line " + lineNumber);
+                    }
+                } catch (NumberFormatException e) {
+                    logger.error("Bad size in image manifest, line " + lineNumber);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Could not read image manifest: " + e.getMessage());
+        }
+        return keys;
+    }
+}
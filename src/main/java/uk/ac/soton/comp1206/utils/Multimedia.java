@@ -1,6 +1,10 @@
 package uk.ac.soton.comp1206.utils;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javafx.animation.KeyFrame;
 import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
@@ -33,13 +37,11 @@ public class Multimedia {
     public static final DoubleProperty masterVolume = new SimpleDoubleProperty(0.5);
     private static final Logger logger = LogManager.getLogger(Multimedia.class);
     private static final String MUSIC_PATH = "/music/";
-    private static final String SOUND_PATH = "/sounds/";
-    private static final String IMAGE_PATH = "/images/";
 
     /**
-     * The sound effect player that is currently playing
+     * The music loaded so far, by filename
      */
-    private static MediaPlayer soundEffectPlayer;
+    private static final Map<String, Media> music = new ConcurrentHashMap<>();
 
     /**
      * The music player that is currently playing
@@ -52,11 +54,6 @@ public class Multimedia {
      */
     private static MediaPlayer nextMusicPlayer;
 
-    /**
-     * Whether the current sound effect should be interrupted
-     */
-    private static boolean doNotInterrupt = false;
-
     /**
      * Checks if the given music file is currently playing
      *
@@ -70,27 +67,32 @@ public class Multimedia {
     }
 
     /**
-     * Loads a music file from the given file in the music folder
+     * Loads a music file from the given file in the music folder. Each file is only loaded once.
      *
      * @param filename the filename of the music
      * @return the music as a {@link Media} object
-     * @throws NullPointerException
+     * @throws NullPointerException if the file is not found
      */
     private static Media loadMusic(String filename) throws NullPointerException {
-        return new Media(Objects.requireNonNull(Multimedia.class.getResource(MUSIC_PATH + filename))
-                .toExternalForm());
+        return music.computeIfAbsent(filename, name -> new Media(
+                Objects.requireNonNull(Multimedia.class.getResource(MUSIC_PATH + name))
+                        .toExternalForm()));
     }
 
     /**
-     * Loads a sound effect from the given file in the sounds folder
+     * Loads music files in advance, so they can start straight away. Files that can't be found are
+     * skipped.
      *
-     * @param filename the filename of the sound effect
-     * @return the sound effect
-     * @throws NullPointerException if the file is not found
+     * @param filenames the filenames of the music
      */
-    private static Media loadSound(String filename) throws NullPointerException {
-        return new Media(Objects.requireNonNull(Multimedia.class.getResource(SOUND_PATH + filename))
-                .toExternalForm());
+    public static void preloadMusic(String... filenames) {
+        for (var filename : filenames) {
+            try {
+                loadMusic(filename);
+            } catch (RuntimeException e) {
+                logger.warn("Could not load music: " + filename);
+            }
+        }
     }
 
     /**
@@ -211,17 +213,18 @@ public class Multimedia {
     /**
      * Plays a sound effect after the specified delay
      *
-     * @param filename     the name of the file to play
-     * @param delay        the delay before playing the sound
-     * @param volume       the relative volume of the sound
-     * @param highPriority if {@code true}, the sound cannot be interrupted by other sounds
+     * @param filename the name of the file to play
+     * @param delay    the delay before playing the sound, in milliseconds
+     * @param volume   the relative volume of the sound
+     * @param priority how important the sound is, if too many sounds are playing at once
      * @throws NullPointerException if the file is not found
      */
     public static void playSoundDelayed(String filename, double delay, double volume,
-            boolean highPriority) throws NullPointerException {
-        Timeline timeline = new Timeline(new KeyFrame(Duration.millis(delay),
-                event -> playSound(filename, volume, highPriority)));
-        timeline.play();
+            SoundEffects.Priority priority) throws NullPointerException {
+        // Check the file exists now, rather than when the delay is up
+        SoundEffects.require(filename);
+        GameScheduler.schedule(() -> playSound(filename, volume, priority),
+                (long) (delay * 1000000), TimeUnit.NANOSECONDS);
     }
 
     /**
@@ -231,7 +234,7 @@ public class Multimedia {
      * @throws NullPointerException if the file is not found
      */
     public static void playSound(String filename) throws NullPointerException {
-        playSound(filename, 1D, false);
+        playSound(filename, 1D, SoundEffects.Priority.NORMAL);
     }
 
     /**
@@ -242,35 +245,23 @@ public class Multimedia {
      * @throws NullPointerException if the file is not found
      */
     public static void playSound(String filename, double volume) throws NullPointerException {
-        playSound(filename, volume, false);
+        playSound(filename, volume, SoundEffects.Priority.NORMAL);
     }
 
     /**
-     * Plays a sound effect
+     * Plays a sound effect. Several sounds can play at once; see {@link SoundEffects}.
      *
-     * @param filename     the name of the file to play
-     * @param volume       the volume of the sound
-     * @param highPriority if {@code true}, the sound cannot be interrupted by other sounds
+     * @param filename the name of the file to play
+     * @param volume   the volume of the sound
+     * @param priority how important the sound is, if too many sounds are playing at once
      * @throws NullPointerException if the file is not found
      */
-    public static void playSound(String filename, double volume, boolean highPriority)
+    public static void playSound(String filename, double volume, SoundEffects.Priority priority)
             throws NullPointerException {
         logger.debug(Colour.purple("Playing sound: " + filename));
 
-        if (soundEffectPlayer != null) {
-            if (doNotInterrupt && !highPriority) {
-                return;
-            }
-            soundEffectPlayer.stop();
-        }
-        doNotInterrupt = highPriority;
-        soundEffectPlayer = new MediaPlayer(loadSound(filename));
-        soundEffectPlayer.volumeProperty()
-                .bind(masterVolume.multiply(soundEffectVolume).multiply(volume));
-
-        soundEffectPlayer.setOnEndOfMedia(() -> doNotInterrupt = false);
-
-        soundEffectPlayer.play();
+        var level = masterVolume.get() * soundEffectVolume.get() * volume;
+        SoundEffects.play(filename, Math.min(level, 1), priority);
     }
 
 
@@ -282,13 +273,12 @@ public class Multimedia {
         if (musicPlayer != null) {
             musicPlayer.stop();
         }
-        if (soundEffectPlayer != null) {
-            soundEffectPlayer.stop();
-        }
+        SoundEffects.stopAll();
     }
 
     /**
-     * Gets an image from the resources folder
+     * Gets an image from the resources folder. Images are cached, and load in the background if
+     * they aren't cached yet; see {@link ImageCache}.
      *
      * @param filename the name of the file to get
      * @param size     the size of the image, in pixels. Use this to force the image to load at a
@@ -300,7 +290,8 @@ public class Multimedia {
     }
 
     /**
-     * Gets an image from the resources folder
+     * Gets an image from the resources folder. Images are cached, and load in the background if
+     * they aren't cached yet; see {@link ImageCache}.
      *
      * @param filename the name of the file to get
      * @param width    the width of the image, in pixels. Use this to force the image to load at a
@@ -310,9 +301,7 @@ public class Multimedia {
      */
     public static Image getImage(String filename, int width, int height) {
         try {
-            return new Image(
-                    Objects.requireNonNull(Multimedia.class.getResource(IMAGE_PATH + filename))
-                            .toExternalForm(), width, height, true, false);
+            return ImageCache.get(imageKey(filename, width, height));
         } catch (NullPointerException e) {
             logger.error("Could not find image: " + filename);
             return null;
@@ -320,20 +309,54 @@ public class Multimedia {
     }
 
     /**
-     * Gets an image from the resources folder
+     * Gets an image from the resources folder. Images are cached, and load in the background if
+     * they aren't cached yet; see {@link ImageCache}.
      *
      * @param filename the name of the file to get
      * @return the {@link Image}
      */
     public static Image getImage(String filename) {
         try {
-            return new Image(
-                    Objects.requireNonNull(Multimedia.class.getResource(IMAGE_PATH + filename))
-                            .toExternalForm());
+            return ImageCache.get(imageKey(filename));
         } catch (NullPointerException e) {
             logger.error("Could not find image: " + filename);
             return null;
         }
     }
 
+    /**
+     * Gets an image from the resources folder once it is fully decoded, for reading its pixels.
+     * The image is decoded on a worker thread if it isn't cached.
+     *
+     * @param filename the name of the file to get
+     * @param width    the width of the image, in pixels
+     * @param height   the height of the image, in pixels
+     * @return the {@link Image}, once it is decoded
+     */
+    public static CompletableFuture<Image> loadImage(String filename, int width, int height) {
+        return ImageCache.load(imageKey(filename, width, height));
+    }
+
+    /**
+     * Get the cache key for an image loaded at its own size
+     *
+     * @param filename the name of the file
+     * @return the key
+     */
+    static ImageCache.Key imageKey(String filename) {
+        return new ImageCache.Key(filename, 0, 0, true);
+    }
+
+    /**
+     * Get the cache key for an image loaded at a specific resolution
+     *
+     * @param filename the name of the file
+     * @param width    the width of the image, in pixels
+     * @param height   the height of the image, in pixels
+     * @return the key
+     */
+    static ImageCache.Key imageKey(String filename, int width, int height) {
+        return new ImageCache.Key(filename, width, height, false);
+    }
+
 }
\ No newline at end of file
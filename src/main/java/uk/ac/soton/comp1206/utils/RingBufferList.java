@@ -0,0 +1,152 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javafx.collections.ObservableListBase;
+
+/**
+ * An observable list with a fixed capacity, backed by a ring buffer. Elements can only be added to
+ * the end; once the list is full, each new element pushes out the oldest one.
+ * <p>
+ * Adding any number of elements with {@link #addAll(Collection)} fires a single change, so a view
+ * bound to the list only updates once per batch.
+ *
+ * @param <E> the type of the elements
+ */
+public class RingBufferList<E> extends ObservableListBase<E> {
+
+    /**
+     * The elements, starting at {@link #head} and wrapping around
+     */
+    private final Object[] buffer;
+
+    /**
+     * The index of the oldest element in {@link #buffer}
+     */
+    private int head = 0;
+
+    /**
+     * The number of elements in the list
+     */
+    private int size = 0;
+
+    /**
+     * Create an empty list
+     *
+     * @param capacity the most elements the list can hold
+     */
+    public RingBufferList(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        buffer = new Object[capacity];
+    }
+
+    /**
+     * Get the most elements the list can hold
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return buffer.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return (E) buffer[(head + index) % buffer.length];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add an element to the end of the list, removing the oldest element if the list is full
+     *
+     * @param element the element to add
+     * @return {@code true}
+     */
+    @Override
+    public boolean add(E element) {
+        return addAll(List.of(element));
+    }
+
+    /**
+     * Add elements to the end of the list as a single change, removing the oldest elements if there
+     * is not enough room. If there are more elements than the list can hold, only the last ones are
+     * kept.
+     *
+     * @param elements the elements to add
+     * @return {@code true} if any elements were added
+     */
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        if (elements.isEmpty()) {
+            return false;
+        }
+
+        var capacity = buffer.length;
+        var toAdd = new ArrayList<E>(elements);
+        if (toAdd.size() > capacity) {
+            toAdd = new ArrayList<>(toAdd.subList(toAdd.size() - capacity, toAdd.size()));
+        }
+
+        beginChange();
+
+        // Push out the oldest elements to make room
+        var overflow = Math.max(size + toAdd.size() - capacity, 0);
+        if (overflow > 0) {
+            var removed = new ArrayList<E>(overflow);
+            for (int i = 0; i < overflow; i++) {
+                removed.add(get(i));
+                buffer[(head + i) % capacity] = null;
+            }
+            head = (head + overflow) % capacity;
+            size -= overflow;
+            nextRemove(0, removed);
+        }
+
+        var from = size;
+        for (var element : toAdd) {
+            buffer[(head + size) % capacity] = element;
+            size++;
+        }
+        nextAdd(from, size);
+
+        endChange();
+        return true;
+    }
+
+    /**
+     * Remove every element, as a single change
+     */
+    @Override
+    public void clear() {
+        if (size == 0) {
+            return;
+        }
+
+        var removed = new ArrayList<E>(this);
+        for (int i = 0; i < size; i++) {
+            buffer[(head + i) % buffer.length] = null;
+        }
+        head = 0;
+        size = 0;
+
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+}
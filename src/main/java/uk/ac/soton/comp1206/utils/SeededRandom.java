@@ -0,0 +1,130 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A small, fast random number generator (SplitMix64) whose whole state is a single {@code long}.
+ * <p>
+ * Unlike {@link java.util.Random}, the state can be read and restored, so a game can be reproduced
+ * exactly from its seed or from a snapshot taken part way through. {@link #split()} creates an
+ * independent generator, so separate parts of a game can draw numbers without affecting each
+ * other's sequences.
+ */
+public class SeededRandom {
+
+    /**
+     * The increment applied to the state for each number, from the SplitMix64 algorithm
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The seed this generator was created with
+     */
+    private final long seed;
+
+    /**
+     * The current state
+     */
+    private long state;
+
+    /**
+     * Create a generator with a random seed
+     */
+    public SeededRandom() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Create a generator with the given seed. Two generators with the same seed produce the same
+     * numbers.
+     *
+     * @param seed the seed
+     */
+    public SeededRandom(long seed) {
+        this.seed = seed;
+        this.state = seed;
+    }
+
+    /**
+     * Get the next random {@code long}
+     *
+     * @return a uniformly distributed {@code long}
+     */
+    public long nextLong() {
+        return mix(state += GOLDEN_GAMMA);
+    }
+
+    /**
+     * Get a random {@code int} from 0 (inclusive) to the bound (exclusive)
+     *
+     * @param bound the upper bound; must be positive
+     * @return a uniformly distributed {@code int} in the range
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+
+        // Take the top 31 bits, rejecting values that would make the result biased
+        int bits = (int) (nextLong() >>> 33);
+        int max = bound - 1;
+        if ((bound & max) == 0) {
+            return (int) ((bound * (long) bits) >> 31);
+        }
+        int value = bits % bound;
+        while (bits - value + max < 0) {
+            bits = (int) (nextLong() >>> 33);
+            value = bits % bound;
+        }
+        return value;
+    }
+
+    /**
+     * Create a new generator, seeded from this one. The new generator's numbers do not depend on
+     * how this one is used afterwards.
+     *
+     * @return the new generator
+     */
+    public SeededRandom split() {
+        return new SeededRandom(nextLong());
+    }
+
+    /**
+     * Get the seed this generator was created with
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the current state, which can be restored later with {@link #setState(long)}
+     *
+     * @return the state
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restore a state returned by {@link #getState()}
+     *
+     * @param state the state
+     */
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    /**
+     * The SplitMix64 output function, which scrambles the bits of the state
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,374 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javafx.scene.media.AudioClip;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Plays sound effects from a pool of preloaded clips.
+ * <p>
+ * Every sound in the sounds folder is decoded once, by {@link #preload()}, into an
+ * {@link AudioClip}, which plays straight from memory. Up to {@link #VOICES} sounds can play at
+ * once; when they are all in use, a new sound takes over the voice with the lowest priority, or is
+ * dropped if every voice is playing something more important. A clip that was only just started
+ * is not started again, so holding down a key doesn't stack up copies of the same sound.
+ * <p>
+ * All of this happens on a single sound thread, so starting a sound never holds up the caller.
+ */
+public final class SoundEffects {
+
+    private static final Logger logger = LogManager.getLogger(SoundEffects.class);
+
+    private static final String SOUND_PATH = "/sounds/";
+
+    /**
+     * The most sounds that can play at once
+     */
+    private static final int VOICES = 8;
+
+    /**
+     * The shortest time between two plays of the same clip, in nanoseconds
+     */
+    private static final long MIN_INTERVAL = 40_000_000L;
+
+    /**
+     * How long to assume a clip lasts if its length can't be read, in nanoseconds
+     */
+    private static final long DEFAULT_DURATION = 1_000_000_000L;
+
+    /**
+     * The clips loaded so far, by filename
+     */
+    private static final Map<String, Clip> clips = new ConcurrentHashMap<>();
+
+    /**
+     * The voices, only used on the sound thread
+     */
+    private static final Voice[] voices = new Voice[VOICES];
+
+    /**
+     * The thread that loads and starts every sound
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "Sound effects");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        for (int i = 0; i < VOICES; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    private SoundEffects() {
+    }
+
+    /**
+     * How important a sound is. A sound can only take over a voice playing a sound of the same or
+     * lower priority.
+     */
+    public enum Priority {
+        /**
+         * Frequent feedback, such as rotating a piece, which can be cut short by anything
+         */
+        LOW,
+        /**
+         * Most sounds
+         */
+        NORMAL,
+        /**
+         * Sounds that should always be heard in full, such as levelling up
+         */
+        HIGH
+    }
+
+    /**
+     * Start loading every sound in the background
+     *
+     * @return completes once every sound is loaded
+     */
+    public static CompletableFuture<Void> preload() {
+        return CompletableFuture.runAsync(() -> {
+            var start = System.nanoTime();
+            var names = listSounds();
+            for (var name : names) {
+                getClip(name);
+            }
+            logger.info(Colour.purple("Loaded " + names.size() + " sounds in "
+                    + (System.nanoTime() - start) / 1000000 + "ms"));
+        }, executor);
+    }
+
+    /**
+     * Play a sound
+     *
+     * @param filename the name of the file in the sounds folder
+     * @param volume   the volume to play at, from 0 to 1
+     * @param priority how important the sound is
+     * @throws NullPointerException if the file is not found
+     */
+    public static void play(String filename, double volume, Priority priority)
+            throws NullPointerException {
+        // Fail on the caller's thread, rather than losing the error on the sound thread
+        require(filename);
+
+        executor.execute(() -> start(getClip(filename), volume, priority));
+    }
+
+    /**
+     * Check that a sound exists
+     *
+     * @param filename the name of the file in the sounds folder
+     * @throws NullPointerException if the file is not found
+     */
+    static void require(String filename) throws NullPointerException {
+        if (!clips.containsKey(filename)) {
+            Objects.requireNonNull(SoundEffects.class.getResource(SOUND_PATH + filename),
+                    "Sound not found: " + filename);
+        }
+    }
+
+    /**
+     * Stop every sound that is playing
+     */
+    public static void stopAll() {
+        executor.execute(() -> {
+            for (var voice : voices) {
+                if (voice.clip != null) {
+                    voice.clip.audio.stop();
+                    voice.clip = null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Start a clip on a free voice, or on one taken from a less important sound. Only called on
+     * the sound thread.
+     *
+     * @param clip     the clip to play
+     * @param volume   the volume to play at
+     * @param priority how important the sound is
+     */
+    private static void start(Clip clip, double volume, Priority priority) {
+        var now = System.nanoTime();
+        if (now - clip.lastStarted < MIN_INTERVAL) {
+            return;
+        }
+
+        // Prefer a free voice, then the least important sound, then the one that has played for
+        // longest
+        Voice chosen = null;
+        for (var voice : voices) {
+            if (voice.clip == null || now >= voice.endTime) {
+                chosen = voice;
+                break;
+            }
+            if (chosen == null || voice.priority.compareTo(chosen.priority) < 0
+                    || voice.priority == chosen.priority && voice.startTime < chosen.startTime) {
+                chosen = voice;
+            }
+        }
+
+        if (chosen.clip != null && now < chosen.endTime) {
+            if (chosen.priority.compareTo(priority) > 0) {
+                logger.debug(Colour.purple("Dropped sound: " + clip.name));
+                return;
+            }
+
+            // Stopping a clip stops every copy of it, so free all the voices it was playing on
+            var stolen = chosen.clip;
+            stolen.audio.stop();
+            for (var voice : voices) {
+                if (voice.clip == stolen) {
+                    voice.clip = null;
+                }
+            }
+        }
+
+        clip.audio.play(volume);
+        clip.lastStarted = now;
+
+        chosen.clip = clip;
+        chosen.priority = priority;
+        chosen.startTime = now;
+        chosen.endTime = now + clip.duration;
+    }
+
+    /**
+     * Get a clip, loading it if it hasn't been already
+     *
+     * @param filename the name of the file in the sounds folder
+     * @return the clip
+     */
+    private static Clip getClip(String filename) {
+        return clips.computeIfAbsent(filename, SoundEffects::load);
+    }
+
+    /**
+     * Load a clip from the sounds folder
+     *
+     * @param filename the name of the file
+     * @return the clip
+     */
+    private static Clip load(String filename) {
+        var url = Objects.requireNonNull(SoundEffects.class.getResource(SOUND_PATH + filename),
+                "Sound not found: " + filename);
+
+        long duration = DEFAULT_DURATION;
+        if (filename.endsWith(".wav")) {
+            try (InputStream in = url.openStream()) {
+                duration = wavDuration(in.readAllBytes());
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not read the length of " + filename + ": " + e.getMessage());
+            }
+        }
+
+        return new Clip(filename, new AudioClip(url.toExternalForm()), duration);
+    }
+
+    /**
+     * Read the length of a WAV file from its header
+     *
+     * @param bytes the contents of the file
+     * @return the length, in nanoseconds
+     * @throws IllegalArgumentException if the file is not a WAV file
+     */
+    private static long wavDuration(byte[] bytes) throws IllegalArgumentException {
+        var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (bytes.length < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {
+            throw new IllegalArgumentException("not a WAV file");
+        }
+
+        long byteRate = 0;
+        long dataSize = -1;
+        int offset = 12;
+        while (offset + 8 <= bytes.length) {
+            var id = buffer.getInt(offset);
+            var size = buffer.getInt(offset + 4) & 0xFFFFFFFFL;
+            if (id == 0x20746D66 && offset + 20 <= bytes.length) { // "fmt "
+                byteRate = buffer.getInt(offset + 16) & 0xFFFFFFFFL;
+            } else if (id == 0x61746164) { // "data"
+                dataSize = size;
+            }
+            // Chunks are padded to an even length
+            offset += 8 + (int) (size + (size & 1));
+        }
+
+        if (byteRate == 0 || dataSize < 0) {
+            throw new IllegalArgumentException("missing format or data");
+        }
+        return dataSize * 1_000_000_000L / byteRate;
+    }
+
+    /**
+     * List the files in the sounds folder, whether it is on disk or inside a jar
+     *
+     * @return the filenames, or an empty list if the folder can't be read
+     */
+    private static List<String> listSounds() {
+        try {
+            var url = SoundEffects.class.getResource(SOUND_PATH);
+            if (url == null) {
+                return List.of();
+            }
+            URI uri = url.toURI();
+
+            if (!"jar".equals(uri.getScheme())) {
+                return list(Path.of(uri));
+            }
+
+            FileSystem jar;
+            try {
+                jar = FileSystems.newFileSystem(uri, Map.of());
+            } catch (FileSystemAlreadyExistsException e) {
+                jar = FileSystems.getFileSystem(uri);
+            }
+            return list(jar.getPath(SOUND_PATH));
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            logger.warn("Could not list sounds, they will be loaded when first played: "
+                    + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * List the files in a folder
+     *
+     * @param folder the folder
+     * @return the filenames
+     * @throws IOException if the folder can't be read
+     */
+    private static List<String> list(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> file.getFileName().toString())
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * A decoded sound
+     */
+    private static final class Clip {
+
+        private final String name;
+        private final AudioClip audio;
+
+        /**
+         * How long the clip lasts, in nanoseconds
+         */
+        private final long duration;
+
+        /**
+         * When the clip was last started, only used on the sound thread
+         */
+        private long lastStarted = Long.MIN_VALUE / 2;
+
+        private Clip(String name, AudioClip audio, long duration) {
+            this.name = name;
+            this.audio = audio;
+            this.duration = duration;
+        }
+    }
+
+    /**
+     * One of the sounds that can play at once
+     */
+    private static final class Voice {
+
+        /**
+         * The clip playing on this voice, or {@code null} if it is free
+         */
+        private Clip clip;
+        private Priority priority = Priority.LOW;
+        private long startTime;
+
+        /**
+         * When the clip will finish
+         */
+        private long endTime;
+    }
+}
@@ -0,0 +1,145 @@
+package uk.ac.soton.comp1206.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs the work needed before the game starts, such as decoding images and sounds, all in
+ * parallel.
+ * <p>
+ * Each task starts as soon as it is added, so starting up takes as long as the slowest task rather
+ * than all of them one after another. The fraction of tasks that have finished is available as a
+ * property, for showing progress, and the time each task took is logged and kept.
+ */
+public class StartupTasks {
+
+    private static final Logger logger = LogManager.getLogger(StartupTasks.class);
+
+    /**
+     * The threads that run the tasks that don't have their own
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        var thread = new Thread(task, "Startup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Every task added so far
+     */
+    private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+
+    /**
+     * How long each finished task took, in milliseconds, in the order they finished
+     */
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * The fraction of tasks that have finished, from 0 to 1. Only updated on the FX thread.
+     */
+    private final ReadOnlyDoubleWrapper progress = new ReadOnlyDoubleWrapper(0);
+
+    /**
+     * When the tasks were started
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The number of tasks that have finished, only used on the FX thread
+     */
+    private int finished = 0;
+
+    /**
+     * Run a task on a startup thread
+     *
+     * @param name the name of the task, for logging
+     * @param task the task
+     */
+    public void add(String name, Runnable task) {
+        addAsync(name, () -> CompletableFuture.runAsync(task, executor));
+    }
+
+    /**
+     * Start a task that does its work in the background
+     *
+     * @param name the name of the task, for logging
+     * @param task starts the task, and returns its result
+     */
+    public synchronized void addAsync(String name, Supplier<CompletableFuture<?>> task) {
+        var start = System.nanoTime();
+
+        CompletableFuture<?> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        tasks.add(future.whenComplete((result, error) -> {
+            var time = (System.nanoTime() - start) / 1000000;
+            timings.put(name, time);
+            if (error != null) {
+                logger.error(Colour.error("Startup task failed: " + name + " after " + time + "ms: "
+                        + error.getMessage()));
+            } else {
+                logger.info(Colour.cyan("Startup task finished: " + name + " in " + time + "ms"));
+            }
+            Platform.runLater(this::taskFinished);
+        }));
+    }
+
+    /**
+     * Update the progress once a task has finished
+     */
+    private void taskFinished() {
+        finished++;
+        progress.set((double) finished / tasks.size());
+    }
+
+    /**
+     * Get the fraction of tasks that have finished
+     *
+     * @return the progress property, from 0 to 1
+     */
+    public ReadOnlyDoubleProperty progressProperty() {
+        return progress.getReadOnlyProperty();
+    }
+
+    /**
+     * Get how long each finished task took
+     *
+     * @return the time each task took, in milliseconds, by name
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /**
+     * Wait for every task added so far. A task that fails still counts as finished.
+     *
+     * @return completes once every task has finished
+     */
+    public synchronized CompletableFuture<Void> whenFinished() {
+        var all = tasks.stream()
+                .map(task -> task.handle((result, error) -> null))
+                .toArray(CompletableFuture[]::new);
+
+        return CompletableFuture.allOf(all).thenRun(() -> logger.info(Colour.cyan(
+                "Startup finished in " + (System.nanoTime() - startTime) / 1000000 + "ms: "
+                        + getTimings())));
+    }
+}
@@ -140,13 +140,13 @@ public class Vector2 implements Comparable<Vector2> {
     /**
      * Return the hash code for this vector.
      * <p>
-     * The hash code will be unique as long as the y component is in the range -50 to 50.
+     * The hash code will be unique as long as both components are in the range -32768 to 32767.
      *
      * @return the hash code
      */
     @Override
     public int hashCode() {
-        return x * 100 + y;
+        return x << 16 ^ (y & 0xFFFF);
     }
 
     /**